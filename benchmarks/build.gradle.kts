@@ -20,6 +20,8 @@ dependencies {
         jmh(it)
         testRuntime(it)
     }
+    // measures the footprint of built classifiers
+    jmh("org.openjdk.jol:jol-core:${deps["jol"]}")
 }
 
 jmh {
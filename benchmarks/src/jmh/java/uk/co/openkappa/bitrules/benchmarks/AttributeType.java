@@ -0,0 +1,198 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * The types of attribute a generated rule book can constrain. Values are derived from an
+ * index into the attribute's domain, in order, and each type has values below and above
+ * its domain which no range, equality or prefix constraint generated for it accepts.
+ */
+public enum AttributeType {
+  INT(true, false) {
+    @Override
+    Object value(int index) {
+      return index;
+    }
+
+    @Override
+    Object below() {
+      return -1;
+    }
+
+    @Override
+    Object above() {
+      return Integer.MAX_VALUE;
+    }
+
+    @Override
+    void set(Features features, int slot, Object value) {
+      features.ints[slot] = (Integer) value;
+    }
+
+    @Override
+    void register(Schema<String, Features> schema, String key, int slot) {
+      schema.withAttribute(key, (Features features) -> features.ints[slot]);
+    }
+  },
+  LONG(true, false) {
+    @Override
+    Object value(int index) {
+      return OFFSET + index;
+    }
+
+    @Override
+    Object below() {
+      return -1L;
+    }
+
+    @Override
+    Object above() {
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    void set(Features features, int slot, Object value) {
+      features.longs[slot] = (Long) value;
+    }
+
+    @Override
+    void register(Schema<String, Features> schema, String key, int slot) {
+      schema.withAttribute(key, (Features features) -> features.longs[slot]);
+    }
+  },
+  DOUBLE(true, false) {
+    @Override
+    Object value(int index) {
+      return index / 8D;
+    }
+
+    @Override
+    Object below() {
+      return -1D;
+    }
+
+    @Override
+    Object above() {
+      return Double.MAX_VALUE;
+    }
+
+    @Override
+    void set(Features features, int slot, Object value) {
+      features.doubles[slot] = (Double) value;
+    }
+
+    @Override
+    void register(Schema<String, Features> schema, String key, int slot) {
+      schema.withAttribute(key, (Features features) -> features.doubles[slot]);
+    }
+  },
+  STRING(false, true) {
+    @Override
+    Object value(int index) {
+      return "/group" + (index & 63) + "/value" + index + "/";
+    }
+
+    @Override
+    Object below() {
+      return "#";
+    }
+
+    @Override
+    Object above() {
+      return "#";
+    }
+
+    @Override
+    void set(Features features, int slot, Object value) {
+      features.strings[slot] = (String) value;
+    }
+
+    @Override
+    void register(Schema<String, Features> schema, String key, int slot) {
+      schema.withStringAttribute(key, (Features features) -> features.strings[slot]);
+    }
+  },
+  ENUM(false, false) {
+    @Override
+    Object value(int index) {
+      return SHARDS[index % (SHARDS.length - 1)];
+    }
+
+    @Override
+    Object below() {
+      return Features.Shard.UNKNOWN;
+    }
+
+    @Override
+    Object above() {
+      return Features.Shard.UNKNOWN;
+    }
+
+    @Override
+    void set(Features features, int slot, Object value) {
+      features.shards[slot] = (Features.Shard) value;
+    }
+
+    @Override
+    void register(Schema<String, Features> schema, String key, int slot) {
+      schema.withEnumAttribute(key, (Features features) -> features.shards[slot], Features.Shard.class);
+    }
+  },
+  DATE(true, false) {
+    @Override
+    Object value(int index) {
+      return LocalDate.ofEpochDay(index);
+    }
+
+    @Override
+    Object below() {
+      return LocalDate.ofEpochDay(-1);
+    }
+
+    @Override
+    Object above() {
+      return LocalDate.MAX;
+    }
+
+    @Override
+    void set(Features features, int slot, Object value) {
+      features.dates[slot] = (LocalDate) value;
+    }
+
+    @Override
+    void register(Schema<String, Features> schema, String key, int slot) {
+      schema.withAttribute(key, (Features features) -> features.dates[slot], Comparator.<LocalDate>naturalOrder());
+    }
+  };
+
+  private static final long OFFSET = 1L << 40;
+  private static final Features.Shard[] SHARDS = Features.Shard.values();
+
+  final boolean ordered;
+  final boolean prefixed;
+
+  AttributeType(boolean ordered, boolean prefixed) {
+    this.ordered = ordered;
+    this.prefixed = prefixed;
+  }
+
+  abstract Object value(int index);
+
+  abstract Object below();
+
+  abstract Object above();
+
+  abstract void set(Features features, int slot, Object value);
+
+  abstract void register(Schema<String, Features> schema, String key, int slot);
+
+  /**
+   * @return the value's prefix which is shared by every 64th value, for prefix constraints
+   */
+  static String group(String value) {
+    return value.substring(0, value.indexOf('/', 1) + 1);
+  }
+}
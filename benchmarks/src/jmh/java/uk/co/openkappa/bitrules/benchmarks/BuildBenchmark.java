@@ -0,0 +1,49 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.co.openkappa.bitrules.ImmutableClassifier;
+import uk.co.openkappa.bitrules.MatchingConstraint;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long it takes to build a classifier, from a thousand to a million rules.
+ * Each build is timed on its own since the larger builds take seconds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class BuildBenchmark {
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  int ruleCount;
+
+  @Param({"INT_EQUALITY", "INT_RANGE", "DOUBLE_RANGE", "STRING_EQUALITY", "STRING_PREFIX",
+          "ENUM_EQUALITY", "COMPARABLE_RANGE", "MIXED"})
+  Workload workload;
+
+  Schema<String, Features> schema;
+  List<MatchingConstraint<String, String>> rules;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    RuleBookGenerator generator = workload.generator(ruleCount).seed(ClassificationBenchmark.SEED).build();
+    schema = generator.schema();
+    rules = generator.rules(ruleCount);
+  }
+
+  @Benchmark
+  public ImmutableClassifier<Features, String> build() {
+    return ImmutableClassifier.<String, Features, String>builder(schema).build(rules);
+  }
+
+  @Benchmark
+  public ImmutableClassifier<Features, String> buildParallel() {
+    return ImmutableClassifier.<String, Features, String>builder(schema).parallel().build(rules);
+  }
+}
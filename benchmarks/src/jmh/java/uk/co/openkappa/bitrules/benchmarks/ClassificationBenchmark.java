@@ -0,0 +1,64 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.co.openkappa.bitrules.ImmutableClassifier;
+import uk.co.openkappa.bitrules.MatchingConstraint;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classification throughput by rule shape, attribute type, rule count and hit rate.
+ * The rule counts are chosen so that each mask type is used: 50 rules fit a TinyMask,
+ * 1000 a MediumMask, 10000 a SmallMask and 100000 need a HugeMask.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ClassificationBenchmark {
+
+  static final int INPUTS = 1024;
+  static final long SEED = 42;
+
+  @Param({"50", "1000", "10000", "100000"})
+  int ruleCount;
+
+  @Param({"INT_EQUALITY", "INT_RANGE", "LONG_EQUALITY", "LONG_RANGE", "DOUBLE_RANGE",
+          "STRING_EQUALITY", "STRING_PREFIX", "ENUM_EQUALITY", "COMPARABLE_RANGE", "MIXED"})
+  Workload workload;
+
+  @Param({"0.1", "0.9"})
+  double hitRate;
+
+  ImmutableClassifier<Features, String> classifier;
+  Features[] inputs;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    RuleBookGenerator generator = workload.generator(ruleCount).hitRate(hitRate).seed(SEED).build();
+    List<MatchingConstraint<String, String>> rules = generator.rules(ruleCount);
+    classifier = ImmutableClassifier.<String, Features, String>builder(generator.schema()).build(rules);
+    inputs = generator.inputs(rules, INPUTS);
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int index;
+
+    Features next(Features[] inputs) {
+      return inputs[index++ & (INPUTS - 1)];
+    }
+  }
+
+  @Benchmark
+  public Optional<String> classification(Cursor cursor) {
+    return classifier.classification(cursor.next(inputs));
+  }
+
+  @Benchmark
+  public void classifications(Cursor cursor, Blackhole bh) {
+    classifier.classifications(cursor.next(inputs)).forEach(bh::consume);
+  }
+}
@@ -0,0 +1,61 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.co.openkappa.bitrules.Mask;
+import uk.co.openkappa.bitrules.Operation;
+import uk.co.openkappa.bitrules.masks.MaskFactory;
+import uk.co.openkappa.bitrules.matchers.nodes.ComparableNode;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up ComparableNode thresholds, which are navigated in a sorted map, in isolation.
+ * Half the lookups are for a threshold and half fall between thresholds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ComparableNodeBenchmark {
+
+  @Param({"16", "256", "4096", "65536"})
+  int thresholds;
+
+  @Param({"EQ", "GE", "LT"})
+  Operation operation;
+
+  @Param({"UNIFORM", "ZIPF"})
+  Distribution distribution;
+
+  @Param({"TINY", "SMALL", "HUGE"})
+  MaskTier tier;
+
+  private ComparableNode<LocalDate, ?> node;
+  private LocalDate[] queries;
+  private int index;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    node = build(tier.factory());
+    int[] sample = distribution.sample(thresholds, NodeBenchmarks.QUERIES, new SplittableRandom(NodeBenchmarks.SEED));
+    queries = new LocalDate[sample.length];
+    for (int i = 0; i < sample.length; ++i) {
+      queries[i] = LocalDate.ofEpochDay(sample[i] * 10L + (i & 1));
+    }
+  }
+
+  private <MaskType extends Mask<MaskType>> ComparableNode<LocalDate, MaskType> build(MaskFactory<MaskType> factory) {
+    ComparableNode<LocalDate, MaskType> node = new ComparableNode<>(Comparator.<LocalDate>naturalOrder(), operation, factory.emptySingleton());
+    for (int i = 0; i < thresholds; ++i) {
+      node.add(LocalDate.ofEpochDay(i * 10L), tier.id(i));
+    }
+    return node.freeze();
+  }
+
+  @Benchmark
+  public Mask<?> match() {
+    return node.match(queries[index++ & (NodeBenchmarks.QUERIES - 1)]);
+  }
+}
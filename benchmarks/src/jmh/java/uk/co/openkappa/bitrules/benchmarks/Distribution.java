@@ -0,0 +1,68 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * How often each key is looked up.
+ */
+public enum Distribution {
+  UNIFORM {
+    @Override
+    int[] sample(int keys, int samples, SplittableRandom random) {
+      int[] sample = new int[samples];
+      for (int i = 0; i < samples; ++i) {
+        sample[i] = random.nextInt(keys);
+      }
+      return sample;
+    }
+  },
+  /**
+   * Zipf with exponent 1, so a few keys are looked up most of the time. The hot keys
+   * are scattered across the key range rather than all being the smallest keys.
+   */
+  ZIPF {
+    @Override
+    int[] sample(int keys, int samples, SplittableRandom random) {
+      double[] cumulative = new double[keys];
+      double sum = 0;
+      for (int rank = 0; rank < keys; ++rank) {
+        sum += 1D / (rank + 1);
+        cumulative[rank] = sum;
+      }
+      int[] permutation = new int[keys];
+      for (int i = 0; i < keys; ++i) {
+        permutation[i] = i;
+      }
+      for (int i = keys - 1; i > 0; --i) {
+        int j = random.nextInt(i + 1);
+        int tmp = permutation[i];
+        permutation[i] = permutation[j];
+        permutation[j] = tmp;
+      }
+      int[] sample = new int[samples];
+      for (int i = 0; i < samples; ++i) {
+        double target = random.nextDouble() * sum;
+        int low = 0;
+        int high = keys - 1;
+        while (low < high) {
+          int mid = (low + high) >>> 1;
+          if (cumulative[mid] < target) {
+            low = mid + 1;
+          } else {
+            high = mid;
+          }
+        }
+        sample[i] = permutation[low];
+      }
+      return sample;
+    }
+  };
+
+  /**
+   * @param keys the number of distinct keys
+   * @param samples the number of lookups
+   * @param random the source of randomness
+   * @return the index of the key for each lookup
+   */
+  abstract int[] sample(int keys, int samples, SplittableRandom random);
+}
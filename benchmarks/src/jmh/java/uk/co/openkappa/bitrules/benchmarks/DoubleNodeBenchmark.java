@@ -0,0 +1,63 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.co.openkappa.bitrules.Mask;
+import uk.co.openkappa.bitrules.Operation;
+import uk.co.openkappa.bitrules.masks.MaskFactory;
+import uk.co.openkappa.bitrules.matchers.nodes.DoubleNode;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up DoubleNode thresholds in isolation. Half the lookups are for a threshold
+ * and half fall between thresholds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DoubleNodeBenchmark {
+
+  @Param({"16", "256", "4096", "65536"})
+  int thresholds;
+
+  @Param({"EQ", "GE", "LT"})
+  Operation operation;
+
+  @Param({"UNIFORM", "ZIPF"})
+  Distribution distribution;
+
+  @Param({"TINY", "SMALL", "HUGE"})
+  MaskTier tier;
+
+  private DoubleNode<?> node;
+  private double[] queries;
+  private int index;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    node = build(tier.factory());
+    double[] keys = new double[thresholds];
+    for (int i = 0; i < thresholds; ++i) {
+      keys[i] = i * 10D;
+    }
+    int[] sample = distribution.sample(thresholds, NodeBenchmarks.QUERIES, new SplittableRandom(NodeBenchmarks.SEED));
+    queries = new double[sample.length];
+    for (int i = 0; i < sample.length; ++i) {
+      queries[i] = keys[sample[i]] + (i & 1) / 2D;
+    }
+  }
+
+  private <MaskType extends Mask<MaskType>> DoubleNode<MaskType> build(MaskFactory<MaskType> factory) {
+    DoubleNode<MaskType> node = new DoubleNode<>(operation, factory.emptySingleton());
+    for (int i = 0; i < thresholds; ++i) {
+      node.add(i * 10D, tier.id(i));
+    }
+    return node.optimise();
+  }
+
+  @Benchmark
+  public Mask<?> match() {
+    return node.match(queries[index++ & (NodeBenchmarks.QUERIES - 1)]);
+  }
+}
@@ -0,0 +1,25 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import java.time.LocalDate;
+
+/**
+ * The input classified by the benchmarks, with a few attributes of each type.
+ * A workload only populates and constrains the attributes of its own type.
+ */
+public class Features {
+
+  public static final int ATTRIBUTES = 3;
+
+  public enum Shard {
+    S0, S1, S2, S3, S4, S5, S6, S7, S8, S9, S10, S11, S12, S13, S14,
+    /** never required by a rule */
+    UNKNOWN
+  }
+
+  final int[] ints = new int[ATTRIBUTES];
+  final long[] longs = new long[ATTRIBUTES];
+  final double[] doubles = new double[ATTRIBUTES];
+  final String[] strings = new String[ATTRIBUTES];
+  final Shard[] shards = new Shard[ATTRIBUTES];
+  final LocalDate[] dates = new LocalDate[ATTRIBUTES];
+}
@@ -0,0 +1,69 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import org.openjdk.jol.info.GraphLayout;
+import uk.co.openkappa.bitrules.ImmutableClassifier;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The retained size of a classifier, walked with JOL. Objects reachable from more than
+ * one matcher, such as interned strings, are counted against each of them.
+ */
+final class Footprint {
+
+  final GraphLayout layout;
+  final Map<String, Long> matchers;
+
+  private Footprint(GraphLayout layout, Map<String, Long> matchers) {
+    this.layout = layout;
+    this.matchers = matchers;
+  }
+
+  static Footprint of(ImmutableClassifier<?, ?> classifier) {
+    Map<String, Long> matchers = new TreeMap<>();
+    matchers(classifier).forEach((key, matcher) -> matchers.put(key + " (" + matcher.getClass().getSimpleName() + ")",
+            GraphLayout.parseInstance(matcher).totalSize()));
+    return new Footprint(GraphLayout.parseInstance(classifier), matchers);
+  }
+
+  long totalBytes() {
+    return layout.totalSize();
+  }
+
+  long matcherBytes() {
+    return matchers.values().stream().mapToLong(Long::longValue).sum();
+  }
+
+  /**
+   * @return the retained size of each matcher, then the size of every class, which breaks
+   * the footprint down by node and mask type
+   */
+  String report() {
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%,15d  total%n", totalBytes()));
+    matchers.forEach((matcher, bytes) -> report.append(String.format("%,15d  %s%n", bytes, matcher)));
+    return report.append(layout.toFootprint()).toString();
+  }
+
+  /**
+   * The matchers aren't exposed, so they are read reflectively from the compilation
+   * of mask based classifiers. Decision DAGs and partitioned classifiers only report totals.
+   */
+  private static Map<?, ?> matchers(ImmutableClassifier<?, ?> classifier) {
+    try {
+      Object compilation = field(classifier, "compilation");
+      return null == compilation ? Collections.emptyMap() : (Map<?, ?>) field(compilation, "matchers");
+    } catch (ReflectiveOperationException e) {
+      return Collections.emptyMap();
+    }
+  }
+
+  private static Object field(Object target, String name) throws ReflectiveOperationException {
+    Field field = target.getClass().getDeclaredField(name);
+    field.setAccessible(true);
+    return field.get(target);
+  }
+}
@@ -0,0 +1,78 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.co.openkappa.bitrules.ImmutableClassifier;
+import uk.co.openkappa.bitrules.MatchingConstraint;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports how much memory a built classifier retains, as the <code>totalBytes</code> and
+ * <code>matcherBytes</code> secondary results. The heap is walked before the trial, outside
+ * the timed region, and the primary score is the average time to build the classifier, which
+ * is measured briefly because JMH doesn't report auxiliary counters in single shot mode. Set
+ * <code>-Dfootprint.report=&lt;directory&gt;</code> to write a breakdown by matcher and by
+ * class for each trial into the directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Djdk.attach.allowAttachSelf"})
+public class FootprintBenchmark {
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  int ruleCount;
+
+  @Param({"INT_EQUALITY", "INT_RANGE", "DOUBLE_RANGE", "STRING_EQUALITY", "STRING_PREFIX",
+          "ENUM_EQUALITY", "COMPARABLE_RANGE", "MIXED"})
+  Workload workload;
+
+  private Schema<String, Features> schema;
+  private List<MatchingConstraint<String, String>> rules;
+  private Footprint footprint;
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Bytes {
+    public long totalBytes;
+    public long matcherBytes;
+  }
+
+  @Setup(Level.Trial)
+  public void measure() {
+    RuleBookGenerator generator = workload.generator(ruleCount).seed(ClassificationBenchmark.SEED).build();
+    schema = generator.schema();
+    rules = generator.rules(ruleCount);
+    footprint = Footprint.of(build());
+  }
+
+  @Benchmark
+  public ImmutableClassifier<Features, String> footprint(Bytes bytes) {
+    bytes.totalBytes = footprint.totalBytes();
+    bytes.matcherBytes = footprint.matcherBytes();
+    return build();
+  }
+
+  @TearDown(Level.Trial)
+  public void report() throws IOException {
+    String directory = System.getProperty("footprint.report");
+    if (null != directory) {
+      Path file = Paths.get(directory).resolve("footprint-" + workload + "-" + ruleCount + ".txt");
+      Files.createDirectories(file.getParent());
+      Files.write(file, footprint.report().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private ImmutableClassifier<Features, String> build() {
+    return ImmutableClassifier.<String, Features, String>builder(schema).build(rules);
+  }
+}
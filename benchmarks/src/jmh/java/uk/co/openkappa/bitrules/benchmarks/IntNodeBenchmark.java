@@ -0,0 +1,63 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.co.openkappa.bitrules.Mask;
+import uk.co.openkappa.bitrules.Operation;
+import uk.co.openkappa.bitrules.masks.MaskFactory;
+import uk.co.openkappa.bitrules.matchers.nodes.IntNode;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up IntNode thresholds in isolation. Half the lookups are for a threshold
+ * and half fall between thresholds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IntNodeBenchmark {
+
+  @Param({"16", "256", "4096", "65536"})
+  int thresholds;
+
+  @Param({"EQ", "GE", "LT"})
+  Operation operation;
+
+  @Param({"UNIFORM", "ZIPF"})
+  Distribution distribution;
+
+  @Param({"TINY", "SMALL", "HUGE"})
+  MaskTier tier;
+
+  private IntNode<?> node;
+  private int[] queries;
+  private int index;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    node = build(tier.factory());
+    int[] keys = new int[thresholds];
+    for (int i = 0; i < thresholds; ++i) {
+      keys[i] = i * 10;
+    }
+    int[] sample = distribution.sample(thresholds, NodeBenchmarks.QUERIES, new SplittableRandom(NodeBenchmarks.SEED));
+    queries = new int[sample.length];
+    for (int i = 0; i < sample.length; ++i) {
+      queries[i] = keys[sample[i]] + (i & 1);
+    }
+  }
+
+  private <MaskType extends Mask<MaskType>> IntNode<MaskType> build(MaskFactory<MaskType> factory) {
+    IntNode<MaskType> node = new IntNode<>(operation, factory.emptySingleton());
+    for (int i = 0; i < thresholds; ++i) {
+      node.add(i * 10, tier.id(i));
+    }
+    return node.optimise();
+  }
+
+  @Benchmark
+  public Mask<?> match() {
+    return node.match(queries[index++ & (NodeBenchmarks.QUERIES - 1)]);
+  }
+}
@@ -0,0 +1,74 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.co.openkappa.bitrules.ImmutableClassifier;
+import uk.co.openkappa.bitrules.MatchingConstraint;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classification latency percentiles, with a single classifier shared by one, two, four
+ * and as many threads as there are cores. Sample time is reported up to p99.99 and the
+ * maximum, which is where allocation and GC pauses show up; run with {@code -prof gc} to
+ * see the allocation rate behind them. Throughput is reported too, so the scaling with
+ * the number of threads can be read off, and whether hit counting, which every thread
+ * records into, limits it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public abstract class LatencyBenchmark {
+
+  @Param({"1000", "100000"})
+  int ruleCount;
+
+  @Param({"INT_RANGE", "STRING_PREFIX", "MIXED"})
+  Workload workload;
+
+  @Param({"false", "true"})
+  boolean counting;
+
+  ImmutableClassifier<Features, String> classifier;
+  Features[] inputs;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    RuleBookGenerator generator = workload.generator(ruleCount).hitRate(0.9).seed(ClassificationBenchmark.SEED).build();
+    List<MatchingConstraint<String, String>> rules = generator.rules(ruleCount);
+    ImmutableClassifier.ClassifierBuilder<String, Features, String> builder =
+            ImmutableClassifier.builder(generator.schema());
+    if (counting) {
+      builder.withHitCounting();
+    }
+    classifier = builder.build(rules);
+    inputs = generator.inputs(rules, ClassificationBenchmark.INPUTS);
+  }
+
+  @Benchmark
+  public Optional<String> classification(ClassificationBenchmark.Cursor cursor) {
+    return classifier.classification(cursor.next(inputs));
+  }
+
+  @Benchmark
+  public int classificationIndex(ClassificationBenchmark.Cursor cursor) {
+    return classifier.classificationIndex(cursor.next(inputs));
+  }
+
+  @Threads(1)
+  public static class OneThread extends LatencyBenchmark {
+  }
+
+  @Threads(2)
+  public static class TwoThreads extends LatencyBenchmark {
+  }
+
+  @Threads(4)
+  public static class FourThreads extends LatencyBenchmark {
+  }
+
+  @Threads(Threads.MAX)
+  public static class AllThreads extends LatencyBenchmark {
+  }
+}
@@ -0,0 +1,35 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import uk.co.openkappa.bitrules.masks.HugeMask;
+import uk.co.openkappa.bitrules.masks.MaskFactory;
+import uk.co.openkappa.bitrules.masks.MediumMask;
+import uk.co.openkappa.bitrules.masks.SmallMask;
+import uk.co.openkappa.bitrules.masks.TinyMask;
+
+/**
+ * The mask types, for benchmarking nodes on their own. Nodes with more thresholds
+ * than a mask can hold reuse constraint ids, which keeps the masks as dense as
+ * they would be in a classifier with that many rules.
+ */
+public enum MaskTier {
+  TINY(TinyMask.MAX_CAPACITY, TinyMask.FACTORY),
+  MEDIUM(MediumMask.MAX_CAPACITY, MediumMask.factory(MediumMask.MAX_CAPACITY)),
+  SMALL(SmallMask.MAX_CAPACITY, SmallMask.FACTORY),
+  HUGE(Integer.MAX_VALUE, HugeMask.FACTORY);
+
+  private final int capacity;
+  private final MaskFactory<?> factory;
+
+  MaskTier(int capacity, MaskFactory<?> factory) {
+    this.capacity = capacity;
+    this.factory = factory;
+  }
+
+  MaskFactory<?> factory() {
+    return factory;
+  }
+
+  int id(int threshold) {
+    return threshold % capacity;
+  }
+}
@@ -0,0 +1,14 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+/**
+ * Shared settings for the node benchmarks.
+ */
+final class NodeBenchmarks {
+
+  /** lookups are cycled through, so this must be a power of two */
+  static final int QUERIES = 4096;
+  static final long SEED = 42;
+
+  private NodeBenchmarks() {
+  }
+}
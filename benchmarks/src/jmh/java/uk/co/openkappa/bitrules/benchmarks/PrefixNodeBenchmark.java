@@ -0,0 +1,75 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.co.openkappa.bitrules.Mask;
+import uk.co.openkappa.bitrules.masks.MaskFactory;
+import uk.co.openkappa.bitrules.matchers.ClassificationNode;
+import uk.co.openkappa.bitrules.matchers.nodes.PrefixNode;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up PrefixNode prefixes in isolation. Prefixes are paths of one to three segments,
+ * and lookups are for paths below a prefix with a suffix of varying length, since every
+ * possible prefix of the input up to the longest prefix is probed. One lookup in eight
+ * matches no prefix.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PrefixNodeBenchmark {
+
+  @Param({"16", "256", "4096", "65536"})
+  int prefixes;
+
+  @Param({"UNIFORM", "ZIPF"})
+  Distribution distribution;
+
+  @Param({"TINY", "SMALL", "HUGE"})
+  MaskTier tier;
+
+  private ClassificationNode<String, ?> node;
+  private String[] queries;
+  private int index;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    node = build(tier.factory());
+    SplittableRandom random = new SplittableRandom(NodeBenchmarks.SEED);
+    int[] sample = distribution.sample(prefixes, NodeBenchmarks.QUERIES, random);
+    queries = new String[sample.length];
+    for (int i = 0; i < sample.length; ++i) {
+      String path = (i & 7) == 0 ? "/unknown/" : prefix(sample[i]);
+      StringBuilder query = new StringBuilder(path);
+      for (int segment = random.nextInt(4); segment >= 0; --segment) {
+        query.append("resource").append(random.nextInt(100)).append('/');
+      }
+      queries[i] = query.toString();
+    }
+  }
+
+  private <MaskType extends Mask<MaskType>> ClassificationNode<String, MaskType> build(MaskFactory<MaskType> factory) {
+    PrefixNode<MaskType> node = new PrefixNode<>(factory.emptySingleton());
+    for (int i = 0; i < prefixes; ++i) {
+      node.add(prefix(i), tier.id(i));
+    }
+    return node.freeze();
+  }
+
+  private static String prefix(int i) {
+    switch (i % 3) {
+      case 0:
+        return "/tenant" + i + "/";
+      case 1:
+        return "/tenant" + (i % 64) + "/service" + i + "/";
+      default:
+        return "/tenant" + (i % 64) + "/service" + (i % 512) + "/endpoint" + i + "/";
+    }
+  }
+
+  @Benchmark
+  public Mask<?> match() {
+    return node.match(queries[index++ & (NodeBenchmarks.QUERIES - 1)]);
+  }
+}
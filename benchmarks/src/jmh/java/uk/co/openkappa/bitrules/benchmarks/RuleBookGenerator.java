@@ -0,0 +1,388 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import uk.co.openkappa.bitrules.Constraint;
+import uk.co.openkappa.bitrules.MatchingConstraint;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates rule books and inputs to classify against them, reproducibly from a seed.
+ * Each attribute is left unconstrained with the configured wildcard density, otherwise
+ * it is constrained with a shape drawn from the operation mix, against a value drawn
+ * from the attribute's domain with the configured skew. Shapes an attribute's type
+ * doesn't support are replaced with equality. Range constraints on an attribute all
+ * point the same way, alternating between attributes, like the minimum amounts and
+ * maximum ages of real rule books, so an input below or above every range exists.
+ * Every rule has at least one constraint which isn't an inequality, so every rule
+ * can be missed.
+ *
+ * Inputs which should hit satisfy a rule chosen with the same skew as the values,
+ * and may satisfy others. Inputs which should miss take a value outside the domain
+ * of every attribute, which no rule accepts.
+ */
+public final class RuleBookGenerator {
+
+  /**
+   * The shapes of constraint generated.
+   */
+  public enum Shape {
+    EQUALITY, INEQUALITY, RANGE, PREFIX
+  }
+
+  /**
+   * How rule priorities are assigned.
+   */
+  public enum Priorities {
+    /** every rule has the same priority, so the first declared wins */
+    CONSTANT,
+    /** priorities are drawn uniformly, and mostly distinct */
+    UNIFORM,
+    /** there are only a few distinct priorities */
+    LEVELS,
+    /** more specific rules, with more constraints, take priority */
+    SPECIFICITY
+  }
+
+  private final AttributeType[] attributes;
+  private final int[] slots;
+  private final double wildcardDensity;
+  private final Shape[] shapes;
+  private final double[] shapeWeights;
+  private final int distinctValues;
+  private final double[] skew;
+  private final Priorities priorities;
+  private final double hitRate;
+  private final long seed;
+
+  private RuleBookGenerator(Builder builder) {
+    this.attributes = builder.attributes.toArray(new AttributeType[0]);
+    this.slots = new int[attributes.length];
+    Map<AttributeType, Integer> used = new EnumMap<>(AttributeType.class);
+    for (int i = 0; i < attributes.length; ++i) {
+      slots[i] = used.merge(attributes[i], 1, Integer::sum) - 1;
+      if (slots[i] >= Features.ATTRIBUTES) {
+        throw new IllegalArgumentException("at most " + Features.ATTRIBUTES + " attributes of each type");
+      }
+    }
+    this.wildcardDensity = builder.wildcardDensity;
+    this.shapes = builder.shapes.keySet().toArray(new Shape[0]);
+    this.shapeWeights = cumulative(builder.shapes.values().stream().mapToDouble(Double::doubleValue).toArray());
+    this.distinctValues = builder.distinctValues;
+    this.skew = zipf(distinctValues, builder.skew);
+    this.priorities = builder.priorities;
+    this.hitRate = builder.hitRate;
+    this.seed = builder.seed;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public Schema<String, Features> schema() {
+    Schema<String, Features> schema = Schema.create();
+    for (int i = 0; i < attributes.length; ++i) {
+      attributes[i].register(schema, key(i), slots[i]);
+    }
+    return schema;
+  }
+
+  public List<MatchingConstraint<String, String>> rules(int count) {
+    SplittableRandom random = new SplittableRandom(seed);
+    List<MatchingConstraint<String, String>> rules = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      MatchingConstraint.Builder<String, String> rule = MatchingConstraint.<String, String>named("rule" + i)
+              .classification("RULE" + i);
+      int constraints = 0;
+      boolean missable = false;
+      for (int attribute = 0; attribute < attributes.length; ++attribute) {
+        if (random.nextDouble() >= wildcardDensity) {
+          Shape shape = shape(attribute, random);
+          constrain(rule, attribute, shape, random);
+          missable |= shape != Shape.INEQUALITY;
+          ++constraints;
+        }
+      }
+      if (!missable) {
+        constrain(rule, random.nextInt(attributes.length), Shape.EQUALITY, random);
+        ++constraints;
+      }
+      rules.add(rule.priority(priority(count, constraints, random)).build());
+    }
+    return rules;
+  }
+
+  /**
+   * @param rules rules generated by this generator
+   * @param count how many inputs to generate
+   * @return the inputs
+   */
+  public Features[] inputs(List<MatchingConstraint<String, String>> rules, int count) {
+    SplittableRandom random = new SplittableRandom(seed + 1);
+    Features[] inputs = new Features[count];
+    for (int i = 0; i < count; ++i) {
+      Features features = new Features();
+      if (random.nextDouble() < hitRate) {
+        MatchingConstraint<String, String> rule = rules.get(skewed(random) % rules.size());
+        for (int attribute = 0; attribute < attributes.length; ++attribute) {
+          set(features, attribute, satisfy(attribute, rule.getConstraints().get(key(attribute)), random));
+        }
+      } else {
+        for (int attribute = 0; attribute < attributes.length; ++attribute) {
+          set(features, attribute, outside(attribute));
+        }
+      }
+      inputs[i] = features;
+    }
+    return inputs;
+  }
+
+  private void constrain(MatchingConstraint.Builder<String, String> rule, int attribute, Shape shape, SplittableRandom random) {
+    AttributeType type = attributes[attribute];
+    Object value = type.value(skewed(random));
+    switch (shape) {
+      case INEQUALITY:
+        rule.neq(key(attribute), value);
+        break;
+      case RANGE:
+        if (ascending(attribute)) {
+          rule.ge(key(attribute), (Comparable<?>) value);
+        } else {
+          rule.le(key(attribute), (Comparable<?>) value);
+        }
+        break;
+      case PREFIX:
+        rule.startsWith(key(attribute), random.nextBoolean() ? AttributeType.group((String) value) : (String) value);
+        break;
+      default:
+        rule.eq(key(attribute), value);
+    }
+  }
+
+  private Object satisfy(int attribute, Constraint constraint, SplittableRandom random) {
+    AttributeType type = attributes[attribute];
+    if (null == constraint) {
+      return type.value(skewed(random));
+    }
+    Object value = constraint.getValue();
+    switch (constraint.getOperation()) {
+      case NE:
+        Object other = type.value(skewed(random));
+        while (other.equals(value)) {
+          other = type.value(random.nextInt(distinctValues));
+        }
+        return other;
+      case GE:
+        return type.value(index(type, value) + random.nextInt(distinctValues - index(type, value)));
+      case LE:
+        return type.value(random.nextInt(index(type, value) + 1));
+      case STARTS_WITH:
+        return value + "resource" + random.nextInt(100) + "/";
+      default:
+        return value;
+    }
+  }
+
+  /**
+   * Finds the index of a value in a numeric or date domain by bisection, which relies
+   * on values being derived from their indices in order.
+   */
+  @SuppressWarnings("unchecked")
+  private int index(AttributeType type, Object value) {
+    int low = 0;
+    int high = distinctValues - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (((Comparable<Object>) type.value(mid)).compareTo(value) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private Object outside(int attribute) {
+    AttributeType type = attributes[attribute];
+    return ascending(attribute) ? type.below() : type.above();
+  }
+
+  private Shape shape(int attribute, SplittableRandom random) {
+    double target = random.nextDouble() * shapeWeights[shapeWeights.length - 1];
+    int i = 0;
+    while (shapeWeights[i] < target) {
+      ++i;
+    }
+    Shape shape = shapes[i];
+    AttributeType type = attributes[attribute];
+    if ((shape == Shape.RANGE && !type.ordered) || (shape == Shape.PREFIX && !type.prefixed)) {
+      return Shape.EQUALITY;
+    }
+    return shape;
+  }
+
+  private boolean ascending(int attribute) {
+    return (attribute & 1) == 0;
+  }
+
+  private int priority(int count, int constraints, SplittableRandom random) {
+    switch (priorities) {
+      case UNIFORM:
+        return random.nextInt(count);
+      case LEVELS:
+        return random.nextInt(4);
+      case SPECIFICITY:
+        return constraints;
+      default:
+        return 0;
+    }
+  }
+
+  private int skewed(SplittableRandom random) {
+    if (null == skew) {
+      return random.nextInt(distinctValues);
+    }
+    double target = random.nextDouble() * skew[skew.length - 1];
+    int low = 0;
+    int high = skew.length - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (skew[mid] < target) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private void set(Features features, int attribute, Object value) {
+    attributes[attribute].set(features, slots[attribute], value);
+  }
+
+  private String key(int attribute) {
+    return attributes[attribute].name().toLowerCase() + slots[attribute];
+  }
+
+  private static double[] zipf(int size, double exponent) {
+    if (exponent == 0) {
+      return null;
+    }
+    double[] weights = new double[size];
+    for (int rank = 0; rank < size; ++rank) {
+      weights[rank] = 1 / Math.pow(rank + 1, exponent);
+    }
+    return cumulative(weights);
+  }
+
+  private static double[] cumulative(double[] weights) {
+    double[] cumulative = new double[weights.length];
+    double sum = 0;
+    for (int i = 0; i < weights.length; ++i) {
+      sum += weights[i];
+      cumulative[i] = sum;
+    }
+    return cumulative;
+  }
+
+  public static final class Builder {
+    private final List<AttributeType> attributes = new ArrayList<>();
+    private final Map<Shape, Double> shapes = new EnumMap<>(Shape.class);
+    private double wildcardDensity;
+    private int distinctValues = 1000;
+    private double skew;
+    private Priorities priorities = Priorities.CONSTANT;
+    private double hitRate = 0.5;
+    private long seed = 42;
+
+    private Builder() {
+    }
+
+    /**
+     * Adds attributes, at most {@link Features#ATTRIBUTES} of each type
+     * @param type the type of the attributes
+     * @param count how many attributes of the type to add
+     * @return this builder
+     */
+    public Builder attributes(AttributeType type, int count) {
+      for (int i = 0; i < count; ++i) {
+        attributes.add(type);
+      }
+      return this;
+    }
+
+    /**
+     * @param density the probability each attribute is left unconstrained by a rule
+     * @return this builder
+     */
+    public Builder wildcardDensity(double density) {
+      this.wildcardDensity = density;
+      return this;
+    }
+
+    /**
+     * Adds a shape to the operation mix, which is equality only if no shapes are added
+     * @param shape the shape of constraint
+     * @param weight the relative frequency of the shape
+     * @return this builder
+     */
+    public Builder shape(Shape shape, double weight) {
+      shapes.put(shape, weight);
+      return this;
+    }
+
+    /**
+     * @param distinctValues the size of each attribute's domain
+     * @return this builder
+     */
+    public Builder distinctValues(int distinctValues) {
+      this.distinctValues = distinctValues;
+      return this;
+    }
+
+    /**
+     * @param exponent the Zipf exponent values and targeted rules are drawn with, zero for uniform
+     * @return this builder
+     */
+    public Builder skew(double exponent) {
+      this.skew = exponent;
+      return this;
+    }
+
+    public Builder priorities(Priorities priorities) {
+      this.priorities = priorities;
+      return this;
+    }
+
+    /**
+     * @param hitRate the proportion of inputs which satisfy at least one rule
+     * @return this builder
+     */
+    public Builder hitRate(double hitRate) {
+      this.hitRate = hitRate;
+      return this;
+    }
+
+    public Builder seed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    public RuleBookGenerator build() {
+      if (attributes.isEmpty()) {
+        throw new IllegalStateException("no attributes");
+      }
+      if (distinctValues < 2) {
+        throw new IllegalStateException("attributes need at least two distinct values");
+      }
+      if (shapes.isEmpty()) {
+        shapes.put(Shape.EQUALITY, 1D);
+      }
+      return new RuleBookGenerator(this);
+    }
+  }
+}
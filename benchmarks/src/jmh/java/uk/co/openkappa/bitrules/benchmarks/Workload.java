@@ -0,0 +1,70 @@
+package uk.co.openkappa.bitrules.benchmarks;
+
+import static uk.co.openkappa.bitrules.benchmarks.Features.ATTRIBUTES;
+import static uk.co.openkappa.bitrules.benchmarks.RuleBookGenerator.Priorities;
+import static uk.co.openkappa.bitrules.benchmarks.RuleBookGenerator.Shape;
+
+/**
+ * Rule books for the classifier benchmarks. Most isolate one attribute type and rule shape,
+ * constraining every attribute, with a value per rule for equality. Range rules share at
+ * most a thousand distinct thresholds per attribute, as real rule books tend to, which also
+ * keeps the cumulative masks of the range matchers for the largest rule counts within a
+ * reasonable heap. {@link #MIXED} resembles a real rule book.
+ */
+public enum Workload {
+  INT_EQUALITY(AttributeType.INT, Shape.EQUALITY),
+  INT_RANGE(AttributeType.INT, Shape.RANGE),
+  LONG_EQUALITY(AttributeType.LONG, Shape.EQUALITY),
+  LONG_RANGE(AttributeType.LONG, Shape.RANGE),
+  DOUBLE_RANGE(AttributeType.DOUBLE, Shape.RANGE),
+  STRING_EQUALITY(AttributeType.STRING, Shape.EQUALITY),
+  STRING_PREFIX(AttributeType.STRING, Shape.PREFIX),
+  ENUM_EQUALITY(AttributeType.ENUM, Shape.EQUALITY),
+  COMPARABLE_RANGE(AttributeType.DATE, Shape.RANGE),
+  /**
+   * Attributes of every type, two in five left unconstrained, mostly equality with some ranges,
+   * prefixes and inequalities, skewed values, and more specific rules taking priority.
+   */
+  MIXED(null, null) {
+    @Override
+    public RuleBookGenerator.Builder generator(int ruleCount) {
+      return RuleBookGenerator.builder()
+              .attributes(AttributeType.INT, 2)
+              .attributes(AttributeType.LONG, 1)
+              .attributes(AttributeType.DOUBLE, 1)
+              .attributes(AttributeType.STRING, 2)
+              .attributes(AttributeType.ENUM, 1)
+              .attributes(AttributeType.DATE, 1)
+              .wildcardDensity(0.4)
+              .shape(Shape.EQUALITY, 0.6)
+              .shape(Shape.RANGE, 0.25)
+              .shape(Shape.PREFIX, 0.1)
+              .shape(Shape.INEQUALITY, 0.05)
+              .distinctValues(Math.max(16, Math.min(ruleCount, MAX_THRESHOLDS)))
+              .skew(1)
+              .priorities(Priorities.SPECIFICITY);
+    }
+  };
+
+  private static final int MAX_THRESHOLDS = 1000;
+
+  private final AttributeType type;
+  private final Shape shape;
+
+  Workload(AttributeType type, Shape shape) {
+    this.type = type;
+    this.shape = shape;
+  }
+
+  /**
+   * @param ruleCount how many rules will be generated
+   * @return a generator for the workload, which can be configured further
+   */
+  public RuleBookGenerator.Builder generator(int ruleCount) {
+    int distinct = Math.max(ruleCount, 16);
+    return RuleBookGenerator.builder()
+            .attributes(type, ATTRIBUTES)
+            .shape(shape, 1)
+            .distinctValues(shape == Shape.RANGE ? Math.min(distinct, MAX_THRESHOLDS) : distinct);
+  }
+}
@@ -17,7 +17,8 @@ subprojects {
                 "jackson" to "2.10.0",
                 "guava"  to "28.1-jre",
                 "roaringbitmap" to "0.8.11",
-                "commons-collections" to "4.2"
+                "commons-collections" to "4.2",
+                "jol" to "0.9"
         )
     }
 
@@ -0,0 +1,22 @@
+package uk.co.openkappa.bitrules;
+
+import uk.co.openkappa.bitrules.masks.MaskFactory;
+
+/**
+ * Times a phase of building a classifier. The phase is only recorded as a {@link BuildPhaseEvent}
+ * when the jdk.jfr module is present and the event is enabled, and builds only refer to this
+ * interface, so the library runs on runtimes without flight recording.
+ */
+interface BuildPhase {
+
+  BuildPhase IGNORED = (phase, rules, attributes, maskFactory) -> { };
+
+  /**
+   * @return a phase which has started, or one which records nothing if the event isn't enabled
+   */
+  static BuildPhase start() {
+    return FlightRecording.available() && BuildPhaseEvent.enabled() ? BuildPhaseEvent.start() : IGNORED;
+  }
+
+  void finish(String phase, int rules, int attributes, MaskFactory<?> maskFactory);
+}
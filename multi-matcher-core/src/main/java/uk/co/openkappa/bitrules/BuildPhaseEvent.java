@@ -0,0 +1,58 @@
+package uk.co.openkappa.bitrules;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import uk.co.openkappa.bitrules.masks.MaskFactory;
+
+/**
+ * Records how long each phase of building a classifier takes in flight recordings,
+ * so build cost can be correlated with allocation and GC.
+ */
+@Name("uk.co.openkappa.bitrules.BuildPhase")
+@Label("Classifier Build Phase")
+@Category("Multi-Matcher")
+@Description("A phase of building a classifier: accumulating constraints, freezing matchers, or sorting matchers")
+@StackTrace(false)
+final class BuildPhaseEvent extends Event implements BuildPhase {
+
+  private static final EventType TYPE = EventType.getEventType(BuildPhaseEvent.class);
+
+  @Label("Phase")
+  String phase;
+
+  @Label("Rules")
+  int rules;
+
+  @Label("Attributes")
+  int attributes;
+
+  @Label("Mask Type")
+  String maskType;
+
+  static boolean enabled() {
+    return TYPE.isEnabled();
+  }
+
+  static BuildPhaseEvent start() {
+    BuildPhaseEvent event = new BuildPhaseEvent();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public void finish(String phase, int rules, int attributes, MaskFactory<?> maskFactory) {
+    end();
+    if (shouldCommit()) {
+      this.phase = phase;
+      this.rules = rules;
+      this.attributes = attributes;
+      this.maskType = maskFactory.emptySingleton().getClass().getSimpleName();
+      commit();
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package uk.co.openkappa.bitrules;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Records a sampled classification in flight recordings. Only one in every so many
+ * classifications on each thread is recorded, so that recording can be left enabled.
+ */
+@Name("uk.co.openkappa.bitrules.Classification")
+@Label("Sampled Classification")
+@Category("Multi-Matcher")
+@Description("A single classification, sampled from the classifications on a thread")
+@StackTrace(false)
+final class ClassificationEvent extends Event {
+
+  @Label("Matchers Applied")
+  int matchers;
+
+  @Label("Matchers")
+  int available;
+
+  @Label("Matched")
+  boolean matched;
+}
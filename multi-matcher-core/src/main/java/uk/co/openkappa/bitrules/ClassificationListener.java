@@ -0,0 +1,30 @@
+package uk.co.openkappa.bitrules;
+
+/**
+ * Observes how a {@link MaskedClassifier} classifies each input, for instance to record latency
+ * histograms or find matchers which rarely narrow the result. Classifiers without a listener
+ * only check a field which is never set, which the JIT compiles away, so there is no cost
+ * unless a listener is registered. Listeners are called on the classifying thread and should
+ * be cheap and thread safe. Batch classification isn't observed.
+ */
+public interface ClassificationListener {
+
+  /**
+   * A listener which does nothing. Registering it is the same as not registering a listener.
+   */
+  ClassificationListener NO_OP = new ClassificationListener() {};
+
+  /**
+   * Called after each matcher has been applied
+   * @param matcher the position of the matcher in the order the matchers were applied
+   * @param cardinality the number of constraints still satisfied
+   */
+  default void stage(int matcher, int cardinality) {}
+
+  /**
+   * Called once the input has been classified
+   * @param nanos how long the classification took, including calls to this listener
+   * @param emptiedAt the position of the matcher which left no constraints satisfied, or -1 if some constraint matched
+   */
+  default void classified(long nanos, int emptiedAt) {}
+}
@@ -1,7 +1,10 @@
 package uk.co.openkappa.bitrules;
 
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.IntConsumer;
 import java.util.stream.Stream;
 
 /**
@@ -26,4 +29,71 @@ public interface Classifier<T, C> {
    */
   Optional<C> classification(T value);
 
+  /**
+   * Gets the index of the highest priority constraint satisfied by the input value.
+   * Indices are in priority order, so a lower index means a higher priority.
+   * @param value the value to classify
+   * @return the index of the best matching constraint, or -1 if no constraints are satisfied
+   */
+  int classificationIndex(T value);
+
+  /**
+   * Gets the classification of the constraint at the index
+   * @param index an index returned by {@link #classificationIndex(Object)}
+   *              or {@link #forEachClassificationIndex(Object, IntConsumer)}
+   * @return the classification of the constraint
+   */
+  C classificationAt(int index);
+
+  /**
+   * Gets the highest priority classification without allocating.
+   * @param value the value to classify
+   * @param defaultValue the value to return if no constraints are satisfied
+   * @return the best classification, or the default value if no constraints are satisfied
+   */
+  C classificationOrElse(T value, C defaultValue);
+
+  /**
+   * Pushes the indices of all constraints satisfied by the input value to the consumer,
+   * in priority order.
+   * @param value the value to classify
+   * @param consumer receives the index of each satisfied constraint
+   */
+  void forEachClassificationIndex(T value, IntConsumer consumer);
+
+  /**
+   * Adds all the classifications satisfied by the input value to the target, in priority order.
+   * @param value the value to classify
+   * @param target the collection to add the classifications to
+   * @param <Target> the type of collection
+   * @return the target
+   */
+  default <Target extends Collection<? super C>> Target classifications(T value, Target target) {
+    forEachClassificationIndex(value, index -> target.add(classificationAt(index)));
+    return target;
+  }
+
+  /**
+   * Classifies a batch of values.
+   * @param values the values to classify
+   * @return the index of the best matching constraint for each value, or -1 if no constraints are satisfied
+   */
+  default int[] classifyAll(List<T> values) {
+    return classifyAll(values, new int[values.size()]);
+  }
+
+  /**
+   * Classifies a batch of values into a caller-supplied array.
+   * @param values the values to classify
+   * @param indices receives the index of the best matching constraint for each value,
+   *                or -1 if no constraints are satisfied. Must be at least as long as the values.
+   * @return the indices
+   */
+  default int[] classifyAll(List<T> values, int[] indices) {
+    for (int i = 0; i < values.size(); ++i) {
+      indices[i] = classificationIndex(values.get(i));
+    }
+    return indices;
+  }
+
 }
@@ -0,0 +1,256 @@
+package uk.co.openkappa.bitrules;
+
+import uk.co.openkappa.bitrules.masks.HugeMask;
+import uk.co.openkappa.bitrules.masks.MaskFactory;
+import uk.co.openkappa.bitrules.masks.MediumMask;
+import uk.co.openkappa.bitrules.masks.SmallMask;
+import uk.co.openkappa.bitrules.masks.TinyMask;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Writes built classifiers to a binary snapshot, and loads them back without rebuilding.
+ * A snapshot holds the frozen matchers, including their range encoded thresholds,
+ * dictionaries and masks, so loading is a matter of copying arrays out of a memory
+ * mapped file rather than accumulating and encoding constraints. Accessors can't be
+ * written, so a snapshot must be loaded with the schema it was built with.
+ *
+ * Attribute keys, classifications and the values of generic attributes are written by
+ * value, and must be strings, boxed primitives or enums. Only classifiers built by
+ * intersecting masks can be written, and not those built from comparable attributes.
+ *
+ * The layout, all big-endian except for masks in roaring's own format, is:
+ * <pre>
+ *   int magic, int version, byte mask tier, int max rules, mask live rules,
+ *   int n, value[n] classifications,
+ *   int m, (value key, matcher)[m] in the order they are applied
+ * </pre>
+ */
+public final class ClassifierSnapshot {
+
+  public static final int MAGIC = 0x4D4D534E;
+  public static final int VERSION = 1;
+
+  private static final byte TINY = 0;
+  private static final byte MEDIUM = 1;
+  private static final byte SMALL = 2;
+  private static final byte HUGE = 3;
+
+  private ClassifierSnapshot() {
+  }
+
+  /**
+   * Writes a snapshot of the classifier to a file
+   * @param classifier the classifier
+   * @param file the file to write to, which will be replaced
+   * @throws IOException if the file can't be written
+   * @throws UnsupportedOperationException if the classifier can't be written
+   */
+  public static void write(ImmutableClassifier<?, ?> classifier, Path file) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+      write(classifier, out);
+    }
+  }
+
+  /**
+   * Writes a snapshot of the classifier
+   * @param classifier the classifier
+   * @param stream where to write the snapshot
+   * @throws IOException if the stream can't be written to
+   * @throws UnsupportedOperationException if the classifier can't be written
+   */
+  public static void write(ImmutableClassifier<?, ?> classifier, OutputStream stream) throws IOException {
+    if (null == classifier.compilation) {
+      throw new UnsupportedOperationException("only mask based classifiers can be written");
+    }
+    DataOutputStream out = new DataOutputStream(stream);
+    write(classifier.compilation, out);
+    out.flush();
+  }
+
+  private static <MaskType extends Mask<MaskType>> void write(ImmutableClassifier.Compilation<?, ?, ?, MaskType> compilation,
+                                                              DataOutput out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeByte(tier(compilation.maskFactory));
+    out.writeInt(compilation.max);
+    compilation.live.write(out);
+    out.writeInt(compilation.classifications.length);
+    for (Object classification : compilation.classifications) {
+      writeValue(out, classification);
+    }
+    Map<Matcher<?, MaskType>, Object> keys = new IdentityHashMap<>();
+    compilation.matchers.forEach((key, matcher) -> keys.put(matcher, key));
+    Matcher<?, MaskType>[] matchers = compilation.classifier.matchers();
+    out.writeInt(matchers.length);
+    for (Matcher<?, MaskType> matcher : matchers) {
+      writeValue(out, keys.get(matcher));
+      matcher.write(out);
+    }
+  }
+
+  /**
+   * Loads a classifier from a snapshot file by mapping it into memory
+   * @param file the snapshot
+   * @param schema the schema the classifier was built with
+   * @return the classifier
+   * @throws IOException if the file can't be read or isn't a snapshot
+   */
+  public static <Key, Input, Classification>
+  Classifier<Input, Classification> load(Path file, Schema<Key, Input> schema) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, READ)) {
+      return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), schema);
+    }
+  }
+
+  /**
+   * Reads a classifier from a snapshot
+   * @param in the snapshot, which is read from its position
+   * @param schema the schema the classifier was built with
+   * @return the classifier
+   * @throws IOException if the buffer doesn't contain a snapshot
+   */
+  public static <Key, Input, Classification>
+  Classifier<Input, Classification> read(ByteBuffer in, Schema<Key, Input> schema) throws IOException {
+    if (in.remaining() < 2 * Integer.BYTES || in.getInt() != MAGIC) {
+      throw new IOException("not a classifier snapshot");
+    }
+    int version = in.getInt();
+    if (version != VERSION) {
+      throw new IOException("unsupported snapshot version " + version);
+    }
+    byte tier = in.get();
+    int max = in.getInt();
+    switch (tier) {
+      case TINY:
+        return read(in, schema, TinyMask.FACTORY, max);
+      case MEDIUM:
+        return read(in, schema, MediumMask.factory(max), max);
+      case SMALL:
+        return read(in, schema, SmallMask.FACTORY, max);
+      case HUGE:
+        return read(in, schema, HugeMask.FACTORY, max);
+      default:
+        throw new IOException("unknown mask tier " + tier);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <Key, Input, Classification, MaskType extends Mask<MaskType>>
+  Classifier<Input, Classification> read(ByteBuffer in, Schema<Key, Input> schema, MaskFactory<MaskType> maskFactory, int max) {
+    MaskType live = maskFactory.read(in);
+    Classification[] classifications = (Classification[]) new Object[in.getInt()];
+    for (int i = 0; i < classifications.length; ++i) {
+      classifications[i] = (Classification) readValue(in);
+    }
+    Matcher<Input, MaskType>[] matchers = new Matcher[in.getInt()];
+    for (int i = 0; i < matchers.length; ++i) {
+      Key key = (Key) readValue(in);
+      matchers[i] = schema.getAttribute(key).toMatcher(maskFactory, max).restore(in, maskFactory);
+    }
+    return new MaskedClassifier<>(classifications, matchers, live);
+  }
+
+  private static byte tier(MaskFactory<?> maskFactory) {
+    return maskFactory == TinyMask.FACTORY ? TINY
+            : maskFactory == SmallMask.FACTORY ? SMALL
+            : maskFactory == HugeMask.FACTORY ? HUGE
+            : MEDIUM;
+  }
+
+  /**
+   * Writes a string, an enum or a boxed primitive
+   * @param out the output
+   * @param value the value
+   * @throws IOException if the value can't be written
+   * @throws UnsupportedOperationException if the value's type isn't supported
+   */
+  public static void writeValue(DataOutput out, Object value) throws IOException {
+    if (value instanceof String) {
+      out.writeByte('S');
+      writeString(out, (String) value);
+    } else if (value instanceof Integer) {
+      out.writeByte('I');
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte('J');
+      out.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      out.writeByte('D');
+      out.writeDouble((Double) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte('Z');
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Character) {
+      out.writeByte('C');
+      out.writeChar((Character) value);
+    } else if (value instanceof Enum) {
+      out.writeByte('E');
+      writeString(out, ((Enum<?>) value).getDeclaringClass().getName());
+      writeString(out, ((Enum<?>) value).name());
+    } else {
+      throw new UnsupportedOperationException("can't write " + (null == value ? null : value.getClass()));
+    }
+  }
+
+  /**
+   * Reads a value written by {@link #writeValue(DataOutput, Object)}
+   * @param in the buffer
+   * @return the value
+   */
+  @SuppressWarnings("unchecked")
+  public static Object readValue(ByteBuffer in) {
+    byte type = in.get();
+    switch (type) {
+      case 'S':
+        return readString(in);
+      case 'I':
+        return in.getInt();
+      case 'J':
+        return in.getLong();
+      case 'D':
+        return in.getDouble();
+      case 'Z':
+        return in.get() != 0;
+      case 'C':
+        return in.getChar();
+      case 'E':
+        String enumType = readString(in);
+        String name = readString(in);
+        try {
+          return Enum.valueOf((Class<? extends Enum>) Class.forName(enumType, false, loader()), name);
+        } catch (ClassNotFoundException e) {
+          throw new IllegalStateException("can't find enum " + enumType, e);
+        }
+      default:
+        throw new IllegalStateException("unknown value type " + type);
+    }
+  }
+
+  private static void writeString(DataOutput out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static ClassLoader loader() {
+    ClassLoader context = Thread.currentThread().getContextClassLoader();
+    return null == context ? ClassifierSnapshot.class.getClassLoader() : context;
+  }
+}
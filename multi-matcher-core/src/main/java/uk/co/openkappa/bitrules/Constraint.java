@@ -2,6 +2,7 @@ package uk.co.openkappa.bitrules;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class Constraint {
 
@@ -62,4 +63,23 @@ public class Constraint {
     return (T) value;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    Constraint that = (Constraint) o;
+    return operation == that.operation &&
+            Objects.equals(value, that.value);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(operation, value);
+  }
+
+  @Override
+  public String toString() {
+    return operation + " " + value;
+  }
+
 }
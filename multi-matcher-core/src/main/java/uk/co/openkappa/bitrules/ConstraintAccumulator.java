@@ -1,10 +1,14 @@
 package uk.co.openkappa.bitrules;
 
+import uk.co.openkappa.bitrules.masks.MaskFactory;
+
+import java.nio.ByteBuffer;
+
 /**
  * A matcher is a column named constraints on the same attribute.
  * @param <T> the type named the classified objects
  */
-public interface ConstraintAccumulator<T, MaskType> {
+public interface ConstraintAccumulator<T, MaskType extends Mask<MaskType>> {
 
 
 
@@ -20,4 +24,14 @@ public interface ConstraintAccumulator<T, MaskType> {
    */
   Matcher<T, MaskType> freeze();
 
+  /**
+   * Restores a frozen matcher written by {@link Matcher#write}, instead of accumulating constraints.
+   * @param in the snapshot, positioned at the matcher, which is advanced past the matcher
+   * @param maskFactory the factory of the masks in the snapshot
+   * @return the frozen matcher
+   */
+  default Matcher<T, MaskType> restore(ByteBuffer in, MaskFactory<MaskType> maskFactory) {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " can't be restored from a snapshot");
+  }
+
 }
@@ -0,0 +1,452 @@
+package uk.co.openkappa.bitrules;
+
+import uk.co.openkappa.bitrules.schema.Attribute;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+import static uk.co.openkappa.bitrules.Operation.EQ;
+
+/**
+ * Classifies by walking a decision DAG rather than intersecting masks. Each branch
+ * switches on the value of one attribute, and each leaf lists the satisfied constraints
+ * in priority order, so classification costs at most one hash lookup per attribute.
+ *
+ * Only rule sets where every constraint is an equality constraint on an attribute which
+ * can be switched on by value can be compiled. At each branch, the attribute expected to
+ * leave the fewest candidate constraints is chosen, and identical subgraphs are shared.
+ * Compilation gives up if the DAG gets too big, which can happen when many rules leave
+ * the same attributes unconstrained. Large rule sets whose DAG is predicted not to fit
+ * are rejected before compiling. Branches on int, long and double attributes switch on
+ * primitive keys, so classification doesn't box attribute values.
+ *
+ * @param <Input> the type of the classified objects
+ * @param <Classification> the type of the classification
+ */
+class DecisionDag<Input, Classification> implements Classifier<Input, Classification> {
+
+  private static final Object ANY = new Object();
+  private static final int[] NONE = new int[0];
+  private static final int SAMPLE = 500;
+
+  private final Classification[] classifications;
+  private final Node<Input> root;
+
+  private DecisionDag(Classification[] classifications, Node<Input> root) {
+    this.classifications = classifications;
+    this.root = root;
+  }
+
+  /**
+   * Compiles the rules into a DAG
+   * @param schema the schema
+   * @param rules the rules, in priority order
+   * @param maxNodes the most branches the DAG may have
+   * @return the DAG, or null if the rules can't be compiled into a DAG within the node budget
+   */
+  static <Key, Input, Classification>
+  DecisionDag<Input, Classification> compile(Schema<Key, Input> schema,
+                                             List<MatchingConstraint<Key, Classification>> rules,
+                                             int maxNodes) {
+    Map<Key, Integer> columns = new HashMap<>();
+    List<Attribute<Input>> attributes = new ArrayList<>();
+    List<Function<Input, Object>> extractors = new ArrayList<>();
+    List<ToLongFunction<Input>> keyExtractors = new ArrayList<>();
+    for (MatchingConstraint<Key, Classification> rule : rules) {
+      for (Map.Entry<Key, Constraint> constraint : rule.getConstraints().entrySet()) {
+        if (constraint.getValue().getOperation() != EQ) {
+          return null;
+        }
+        if (!columns.containsKey(constraint.getKey())) {
+          Attribute<Input> attribute = schema.getAttribute(constraint.getKey());
+          if (null == attribute.extractor() || columns.size() == Long.SIZE) {
+            return null;
+          }
+          columns.put(constraint.getKey(), attributes.size());
+          attributes.add(attribute);
+          extractors.add(attribute.extractor());
+          keyExtractors.add(attribute.keyExtractor());
+        }
+      }
+    }
+    Object[][] values = new Object[rules.size()][attributes.size()];
+    Classification[] classifications = (Classification[]) new Object[rules.size()];
+    for (int i = 0; i < rules.size(); ++i) {
+      Arrays.fill(values[i], ANY);
+      MatchingConstraint<Key, Classification> rule = rules.get(i);
+      classifications[i] = rule.getClassification();
+      for (Map.Entry<Key, Constraint> constraint : rule.getConstraints().entrySet()) {
+        int column = columns.get(constraint.getKey());
+        values[i][column] = attributes.get(column).normalise(constraint.getValue().getValue());
+      }
+    }
+    if (values.length > 4 * SAMPLE
+            && predictSize(values, attributes, extractors, keyExtractors, maxNodes) > maxNodes) {
+      return null;
+    }
+    try {
+      return new DecisionDag<>(classifications, new Compiler<>(values, attributes, extractors, keyExtractors, maxNodes).compile());
+    } catch (TooBig e) {
+      return null;
+    }
+  }
+
+  /**
+   * Predicts how many nodes the DAG needs by compiling two evenly spaced samples of the
+   * rules, one twice the size of the other, and extrapolating the growth between them.
+   * Wildcards make the DAG grow faster than the rules, so a rule set which won't fit is
+   * usually detected for the cost of compiling a few hundred rules rather than all of them.
+   */
+  private static <Input> double predictSize(Object[][] values,
+                                            List<Attribute<Input>> attributes,
+                                            List<Function<Input, Object>> extractors,
+                                            List<ToLongFunction<Input>> keyExtractors,
+                                            int maxNodes) {
+    int[] sizes = new int[2];
+    for (int i = 0; i < sizes.length; ++i) {
+      Object[][] sample = new Object[SAMPLE << i][];
+      for (int j = 0; j < sample.length; ++j) {
+        sample[j] = values[(int) ((long) j * values.length / sample.length)];
+      }
+      Compiler<Input> compiler = new Compiler<>(sample, attributes, extractors, keyExtractors, maxNodes);
+      try {
+        compiler.compile();
+      } catch (TooBig e) {
+        return Double.POSITIVE_INFINITY;
+      }
+      sizes[i] = Math.max(1, compiler.size());
+    }
+    double growth = Math.max(1D, (double) sizes[1] / sizes[0]);
+    double doublings = Math.log((double) values.length / (2 * SAMPLE)) / Math.log(2);
+    return sizes[1] * Math.pow(growth, doublings);
+  }
+
+  /**
+   * @return the most attributes looked up to classify any input
+   */
+  int depth() {
+    return root.depth;
+  }
+
+  @Override
+  public Stream<Classification> classifications(Input value) {
+    return Arrays.stream(match(value)).mapToObj(i -> classifications[i]);
+  }
+
+  @Override
+  public Optional<Classification> classification(Input value) {
+    int[] matches = match(value);
+    return matches.length == 0 ? Optional.empty() : Optional.of(classifications[matches[0]]);
+  }
+
+  @Override
+  public int classificationIndex(Input value) {
+    int[] matches = match(value);
+    return matches.length == 0 ? -1 : matches[0];
+  }
+
+  @Override
+  public Classification classificationAt(int index) {
+    return classifications[index];
+  }
+
+  @Override
+  public Classification classificationOrElse(Input value, Classification defaultValue) {
+    int[] matches = match(value);
+    return matches.length == 0 ? defaultValue : classifications[matches[0]];
+  }
+
+  @Override
+  public void forEachClassificationIndex(Input value, IntConsumer consumer) {
+    for (int index : match(value)) {
+      consumer.accept(index);
+    }
+  }
+
+  private int[] match(Input value) {
+    Node<Input> node = root;
+    while (null != node.extractor) {
+      Node<Input> child = null == node.keys
+              ? node.children.get(node.extractor.apply(value))
+              : node.branch(node.keyExtractor.applyAsLong(value));
+      node = null == child ? node.otherwise : child;
+    }
+    return node.matches;
+  }
+
+  private static final class Node<Input> {
+    private final Function<Input, Object> extractor;
+    private final Map<Object, Node<Input>> children;
+    private final ToLongFunction<Input> keyExtractor;
+    private final long[] keys;
+    private final Node<Input>[] branches;
+    private final Node<Input> otherwise;
+    private final int[] matches;
+    private final int depth;
+
+    @SuppressWarnings("unchecked")
+    private Node(Attribute<Input> attribute,
+                 Function<Input, Object> extractor,
+                 ToLongFunction<Input> keyExtractor,
+                 Map<Object, Node<Input>> children,
+                 Node<Input> otherwise) {
+      this.extractor = extractor;
+      this.otherwise = otherwise;
+      this.matches = null;
+      int deepest = otherwise.depth;
+      for (Node<Input> child : children.values()) {
+        deepest = Math.max(deepest, child.depth);
+      }
+      this.depth = deepest + 1;
+      if (null == keyExtractor) {
+        this.children = children;
+        this.keyExtractor = null;
+        this.keys = null;
+        this.branches = null;
+      } else {
+        // sorted primitive keys, so branching neither boxes nor hashes the value
+        List<Map.Entry<Object, Node<Input>>> entries = new ArrayList<>(children.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> attribute.key(entry.getKey())));
+        this.children = null;
+        this.keyExtractor = keyExtractor;
+        this.keys = new long[entries.size()];
+        this.branches = new Node[entries.size()];
+        for (int i = 0; i < keys.length; ++i) {
+          keys[i] = attribute.key(entries.get(i).getKey());
+          branches[i] = entries.get(i).getValue();
+        }
+      }
+    }
+
+    private Node(int[] matches) {
+      this.extractor = null;
+      this.children = null;
+      this.keyExtractor = null;
+      this.keys = null;
+      this.branches = null;
+      this.otherwise = null;
+      this.matches = matches;
+      this.depth = 0;
+    }
+
+    private Node<Input> branch(long key) {
+      int index = Arrays.binarySearch(keys, key);
+      return index >= 0 ? branches[index] : null;
+    }
+  }
+
+  private static final class Compiler<Input> {
+    private final Object[][] values;
+    private final List<Attribute<Input>> attributes;
+    private final List<Function<Input, Object>> extractors;
+    private final List<ToLongFunction<Input>> keyExtractors;
+    private final int maxNodes;
+    private final Map<Subproblem, Node<Input>> memo = new HashMap<>();
+    private final Map<CandidateSet, CandidateSet> interned = new HashMap<>();
+    private final Node<Input> empty = new Node<>(NONE);
+
+    private Compiler(Object[][] values,
+                     List<Attribute<Input>> attributes,
+                     List<Function<Input, Object>> extractors,
+                     List<ToLongFunction<Input>> keyExtractors,
+                     int maxNodes) {
+      this.values = values;
+      this.attributes = attributes;
+      this.extractors = extractors;
+      this.keyExtractors = keyExtractors;
+      this.maxNodes = maxNodes;
+    }
+
+    Node<Input> compile() {
+      int[] all = new int[values.length];
+      for (int i = 0; i < all.length; ++i) {
+        all[i] = i;
+      }
+      int columns = extractors.size();
+      return compile(all, columns == Long.SIZE ? -1L : (1L << columns) - 1);
+    }
+
+    int size() {
+      return memo.size();
+    }
+
+    Node<Input> compile(int[] candidates, long remaining) {
+      if (candidates.length == 0) {
+        return empty;
+      }
+      CandidateSet set = intern(candidates);
+      candidates = set.candidates;
+      remaining &= set.constrained;
+      Subproblem key = new Subproblem(set, remaining);
+      Node<Input> node = memo.get(key);
+      if (null != node) {
+        return node;
+      }
+      if (remaining == 0) {
+        node = new Node<>(candidates);
+      } else {
+        if (memo.size() >= maxNodes) {
+          throw new TooBig();
+        }
+        int column = mostDiscriminating(candidates, remaining);
+        long next = remaining & ~(1L << column);
+        Map<Object, int[]> partitions = partition(candidates, column);
+        int[] wildcards = partitions.remove(ANY);
+        Map<Object, Node<Input>> children = new HashMap<>();
+        for (Map.Entry<Object, int[]> partition : partitions.entrySet()) {
+          children.put(partition.getKey(), compile(merge(partition.getValue(), wildcards), next));
+        }
+        node = new Node<>(attributes.get(column), extractors.get(column), keyExtractors.get(column), children,
+                compile(null == wildcards ? NONE : wildcards, next));
+      }
+      memo.put(key, node);
+      return node;
+    }
+
+    /**
+     * Replaces the candidates with an equal set seen before, so each distinct set is held once
+     * by the memo and the leaves, and subproblems can be compared by identity.
+     */
+    private CandidateSet intern(int[] candidates) {
+      CandidateSet set = new CandidateSet(candidates);
+      CandidateSet existing = interned.get(set);
+      if (null != existing) {
+        return existing;
+      }
+      set.constrained = constrained(candidates);
+      interned.put(set, set);
+      return set;
+    }
+
+    private long constrained(int[] candidates) {
+      long constrained = 0L;
+      for (int candidate : candidates) {
+        Object[] row = values[candidate];
+        for (int column = 0; column < row.length; ++column) {
+          if (row[column] != ANY) {
+            constrained |= 1L << column;
+          }
+        }
+      }
+      return constrained;
+    }
+
+    /**
+     * Picks the attribute which minimises the average number of candidates per branch.
+     */
+    private int mostDiscriminating(int[] candidates, long remaining) {
+      int best = -1;
+      double bestScore = Double.MAX_VALUE;
+      for (long columns = remaining; columns != 0; columns &= (columns - 1)) {
+        int column = Long.numberOfTrailingZeros(columns);
+        Set<Object> distinct = new HashSet<>();
+        int wildcards = 0;
+        for (int candidate : candidates) {
+          Object value = values[candidate][column];
+          if (value == ANY) {
+            ++wildcards;
+          } else {
+            distinct.add(value);
+          }
+        }
+        int constrained = candidates.length - wildcards;
+        double score = (double) (constrained + wildcards * (distinct.size() + 1)) / (distinct.size() + 1);
+        if (score < bestScore) {
+          bestScore = score;
+          best = column;
+        }
+      }
+      return best;
+    }
+
+    private Map<Object, int[]> partition(int[] candidates, int column) {
+      Map<Object, List<Integer>> grouped = new HashMap<>();
+      for (int candidate : candidates) {
+        grouped.computeIfAbsent(values[candidate][column], v -> new ArrayList<>()).add(candidate);
+      }
+      Map<Object, int[]> partitions = new HashMap<>();
+      grouped.forEach((value, group) -> partitions.put(value, group.stream().mapToInt(Integer::intValue).toArray()));
+      return partitions;
+    }
+  }
+
+  private static int[] merge(int[] left, int[] right) {
+    if (null == right) {
+      return left;
+    }
+    int[] merged = new int[left.length + right.length];
+    int i = 0, j = 0, k = 0;
+    while (i < left.length && j < right.length) {
+      merged[k++] = left[i] < right[j] ? left[i++] : right[j++];
+    }
+    while (i < left.length) {
+      merged[k++] = left[i++];
+    }
+    while (j < right.length) {
+      merged[k++] = right[j++];
+    }
+    return merged;
+  }
+
+  private static final class CandidateSet {
+    private final int[] candidates;
+    private final int hash;
+    private long constrained;
+
+    private CandidateSet(int[] candidates) {
+      this.candidates = candidates;
+      this.hash = Arrays.hashCode(candidates);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      CandidateSet that = (CandidateSet) o;
+      return hash == that.hash && Arrays.equals(candidates, that.candidates);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private static final class Subproblem {
+    private final CandidateSet candidates;
+    private final long remaining;
+    private final int hash;
+
+    private Subproblem(CandidateSet candidates, long remaining) {
+      this.candidates = candidates;
+      this.remaining = remaining;
+      this.hash = 31 * candidates.hash + Long.hashCode(remaining);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Subproblem that = (Subproblem) o;
+      // candidate sets are interned
+      return remaining == that.remaining && candidates == that.candidates;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private static final class TooBig extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private TooBig() {
+      super(null, null, false, false);
+    }
+  }
+}
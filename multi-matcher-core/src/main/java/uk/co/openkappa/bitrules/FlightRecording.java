@@ -0,0 +1,26 @@
+package uk.co.openkappa.bitrules;
+
+/**
+ * Whether the jdk.jfr module is present. Events must not be loaded when it isn't,
+ * because they extend its classes.
+ */
+final class FlightRecording {
+
+  private static final boolean AVAILABLE = isAvailable();
+
+  private FlightRecording() {
+  }
+
+  static boolean available() {
+    return AVAILABLE;
+  }
+
+  private static boolean isAvailable() {
+    try {
+      Class.forName("jdk.jfr.Event", false, FlightRecording.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,230 @@
+package uk.co.openkappa.bitrules;
+
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Holds a classifier which is rebuilt from a rule set in the background and
+ * swapped in atomically once built. Each classification reads the current
+ * version once, so classifications in flight during a swap complete against the
+ * version they started with. Use {@link #current()} when several calls, such as
+ * {@link #classificationIndex(Object)} followed by {@link #classificationAt(int)},
+ * must see the same version.
+ *
+ * @param <Key> the attribute key type
+ * @param <Input> the type of the classified objects
+ * @param <Classification> the type of the classification
+ */
+public class HotSwapClassifier<Key, Input, Classification> implements Classifier<Input, Classification>, AutoCloseable {
+
+  private final Supplier<ImmutableClassifier.ClassifierBuilder<Key, Input, Classification>> builders;
+  private final RuleSet<Key, Classification> rules;
+  private final Executor executor;
+  private final AtomicLong builds = new AtomicLong();
+  private final AtomicReference<Version<Input, Classification>> current;
+  private volatile WatchService watcher;
+
+  /**
+   * Creates a holder which classifies nothing until the first {@link #reload()} completes,
+   * building classifiers with the default options.
+   * @param schema the schema
+   * @param rules the source of rules, read on every reload
+   * @param executor where classifiers are built
+   */
+  public HotSwapClassifier(Schema<Key, Input> schema, RuleSet<Key, Classification> rules, Executor executor) {
+    this(() -> ImmutableClassifier.builder(schema), rules, executor);
+  }
+
+  /**
+   * Creates a holder which classifies nothing until the first {@link #reload()} completes.
+   * @param builders supplies a configured builder for each build, so options such as
+   *                 {@link ImmutableClassifier.ClassifierBuilder#withHitCounting()} apply to every version
+   * @param rules the source of rules, read on every reload
+   * @param executor where classifiers are built
+   */
+  public HotSwapClassifier(Supplier<ImmutableClassifier.ClassifierBuilder<Key, Input, Classification>> builders,
+                           RuleSet<Key, Classification> rules,
+                           Executor executor) {
+    this.builders = builders;
+    this.rules = rules;
+    this.executor = executor;
+    this.current = new AtomicReference<>(new Version<>(0,
+            builders.get().build(Collections.emptyList()),
+            Duration.ZERO, Instant.now()));
+  }
+
+  /**
+   * Reads the rule set and builds a new classifier on the executor, then publishes it.
+   * If several reloads overlap, the one started last wins. If the build fails, the
+   * current classifier stays in place and the future completes exceptionally.
+   * @return a future which completes with the classifier this reload built, after it has been
+   * published or superseded by a later reload
+   */
+  public CompletableFuture<Classifier<Input, Classification>> reload() {
+    long build = builds.incrementAndGet();
+    return CompletableFuture.supplyAsync(() -> {
+      long start = System.nanoTime();
+      ImmutableClassifier<Input, Classification> classifier;
+      try {
+        classifier = builders.get().build(rules);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      Version<Input, Classification> next = new Version<>(build, classifier,
+              Duration.ofNanos(System.nanoTime() - start), Instant.now());
+      current.accumulateAndGet(next, (prev, candidate) -> candidate.build > prev.build ? candidate : prev);
+      return classifier;
+    }, executor);
+  }
+
+  /**
+   * Reloads whenever the file is created or modified, until this holder is closed.
+   * Only one file can be watched at a time.
+   * @param file the file the rule set is read from
+   * @throws IOException if the file's directory can't be watched
+   */
+  public synchronized void watch(Path file) throws IOException {
+    if (null != watcher) {
+      throw new IllegalStateException("already watching");
+    }
+    Path absolute = file.toAbsolutePath();
+    WatchService service = absolute.getFileSystem().newWatchService();
+    absolute.getParent().register(service, ENTRY_CREATE, ENTRY_MODIFY);
+    this.watcher = service;
+    Thread thread = new Thread(() -> poll(service, absolute.getFileName()), "classifier-watch-" + absolute.getFileName());
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void poll(WatchService service, Path name) {
+    try {
+      while (true) {
+        WatchKey key = service.take();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+          changed |= name.equals(event.context());
+        }
+        if (changed) {
+          reload();
+        }
+        if (!key.reset()) {
+          return;
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // closed
+    }
+  }
+
+  /**
+   * Stops watching the rule file, if one is being watched.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (null != watcher) {
+      watcher.close();
+      watcher = null;
+    }
+  }
+
+  /**
+   * @return the classifier currently in use
+   */
+  public Classifier<Input, Classification> current() {
+    return current.get().classifier;
+  }
+
+  /**
+   * @return the number of the reload which built the current classifier, zero before the first reload completes
+   */
+  public long version() {
+    return current.get().build;
+  }
+
+  /**
+   * @return how long it took to read the rules and build the current classifier
+   */
+  public Duration lastBuildDuration() {
+    return current.get().buildDuration;
+  }
+
+  /**
+   * @return when the current classifier was published
+   */
+  public Instant lastSwapTime() {
+    return current.get().publishedAt;
+  }
+
+  @Override
+  public Stream<Classification> classifications(Input value) {
+    return current().classifications(value);
+  }
+
+  @Override
+  public Optional<Classification> classification(Input value) {
+    return current().classification(value);
+  }
+
+  @Override
+  public int classificationIndex(Input value) {
+    return current().classificationIndex(value);
+  }
+
+  @Override
+  public Classification classificationAt(int index) {
+    return current().classificationAt(index);
+  }
+
+  @Override
+  public Classification classificationOrElse(Input value, Classification defaultValue) {
+    return current().classificationOrElse(value, defaultValue);
+  }
+
+  @Override
+  public void forEachClassificationIndex(Input value, IntConsumer consumer) {
+    current().forEachClassificationIndex(value, consumer);
+  }
+
+  @Override
+  public <Target extends Collection<? super Classification>> Target classifications(Input value, Target target) {
+    return current().classifications(value, target);
+  }
+
+  @Override
+  public int[] classifyAll(List<Input> values, int[] indices) {
+    return current().classifyAll(values, indices);
+  }
+
+  private static final class Version<Input, Classification> {
+    private final long build;
+    private final Classifier<Input, Classification> classifier;
+    private final Duration buildDuration;
+    private final Instant publishedAt;
+
+    private Version(long build, Classifier<Input, Classification> classifier, Duration buildDuration, Instant publishedAt) {
+      this.build = build;
+      this.classifier = classifier;
+      this.buildDuration = buildDuration;
+      this.publishedAt = publishedAt;
+    }
+  }
+}
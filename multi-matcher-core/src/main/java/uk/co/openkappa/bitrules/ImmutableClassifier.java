@@ -3,11 +3,18 @@ package uk.co.openkappa.bitrules;
 
 import uk.co.openkappa.bitrules.masks.HugeMask;
 import uk.co.openkappa.bitrules.masks.MaskFactory;
+import uk.co.openkappa.bitrules.masks.MediumMask;
 import uk.co.openkappa.bitrules.masks.SmallMask;
 import uk.co.openkappa.bitrules.masks.TinyMask;
+import uk.co.openkappa.bitrules.schema.Attribute;
 import uk.co.openkappa.bitrules.schema.Schema;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -19,10 +26,31 @@ import java.util.stream.Stream;
  */
 public class ImmutableClassifier<Input, Classification> implements Classifier<Input, Classification> {
 
+  private static final int DEFAULT_CHUNK_SIZE = 1024;
+
   private final Classifier<Input, Classification> impl;
+  final Compilation<?, Input, Classification, ?> compilation;
+  private final RuleSet<?, Classification> rules;
+
+  ImmutableClassifier(Compilation<?, Input, Classification, ?> compilation) {
+    this(compilation, ruleSet(compilation.rules));
+  }
 
-  ImmutableClassifier(Classifier<Input, Classification> impl) {
+  ImmutableClassifier(Compilation<?, Input, Classification, ?> compilation, RuleSet<?, Classification> rules) {
+    this.impl = compilation.classifier;
+    this.compilation = compilation;
+    this.rules = rules;
+  }
+
+  ImmutableClassifier(Classifier<Input, Classification> impl, List<? extends MatchingConstraint<?, Classification>> rules) {
     this.impl = impl;
+    this.compilation = null;
+    this.rules = ruleSet(rules);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <Key, Classification> RuleSet<Key, Classification> ruleSet(List<? extends MatchingConstraint<?, Classification>> rules) {
+    return () -> (List<MatchingConstraint<Key, Classification>>) rules;
   }
 
   /**
@@ -49,16 +77,320 @@ public class ImmutableClassifier<Input, Classification> implements Classifier<In
     return impl.classification(input);
   }
 
+  @Override
+  public int classificationIndex(Input input) {
+    return impl.classificationIndex(input);
+  }
+
+  @Override
+  public Classification classificationAt(int index) {
+    return impl.classificationAt(index);
+  }
+
+  @Override
+  public Classification classificationOrElse(Input input, Classification defaultValue) {
+    return impl.classificationOrElse(input, defaultValue);
+  }
+
+  @Override
+  public void forEachClassificationIndex(Input input, IntConsumer consumer) {
+    impl.forEachClassificationIndex(input, consumer);
+  }
+
+  @Override
+  public <Target extends Collection<? super Classification>> Target classifications(Input input, Target target) {
+    return impl.classifications(input, target);
+  }
+
+  @Override
+  public int[] classifyAll(List<Input> inputs, int[] indices) {
+    return impl.classifyAll(inputs, indices);
+  }
+
+  /**
+   * Classifies the inputs in parallel on the common pool. Collections which can't be split
+   * exactly, like hash sets and concurrent queues, are copied into a list first.
+   *
+   * @param inputs the values to classify
+   * @return the index of the best matching constraint for each input, in the collection's iteration order
+   */
+  public int[] parallelClassifyAll(Collection<Input> inputs) {
+    return parallelClassifyAll(inputs, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Classifies the inputs in parallel on the supplied pool. Collections which can't be split
+   * exactly, like hash sets and concurrent queues, are copied into a list first.
+   *
+   * @param inputs the values to classify
+   * @param pool the pool to classify the inputs on
+   * @return the index of the best matching constraint for each input, in the collection's iteration order
+   */
+  public int[] parallelClassifyAll(Collection<Input> inputs, ForkJoinPool pool) {
+    Spliterator<Input> spliterator = inputs.spliterator();
+    if (!spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED)) {
+      spliterator = new ArrayList<>(inputs).spliterator();
+    }
+    return parallelClassifyAll(spliterator, pool, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Classifies the inputs in parallel, splitting the source until each task has
+   * at most <code>chunkSize</code> inputs, which are then classified as a batch.
+   *
+   * @param inputs the values to classify, which must report {@link Spliterator#SIZED} and {@link Spliterator#SUBSIZED}
+   * @param pool the pool to classify the inputs on
+   * @param chunkSize the maximum number of inputs to classify in a single batch
+   * @return the index of the best matching constraint for each input, in input order
+   */
+  public int[] parallelClassifyAll(Spliterator<Input> inputs, ForkJoinPool pool, int chunkSize) {
+    if (!inputs.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED)) {
+      throw new IllegalArgumentException("inputs must be SIZED and SUBSIZED to preserve order");
+    }
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+    }
+    int[] indices = new int[(int) inputs.getExactSizeIfKnown()];
+    pool.invoke(new ParallelClassification<>(impl, inputs, indices, 0, chunkSize));
+    return indices;
+  }
+
+  /**
+   * Gets how many times each rule has matched since the last reset, or since the classifier was built.
+   * Rules which share an id are counted together.
+   *
+   * @return the number of matches by rule id
+   * @throws IllegalStateException if the classifier wasn't built to count hits
+   */
+  public Map<String, Long> ruleHits() {
+    long[] matches = hits().matches();
+    List<? extends MatchingConstraint<?, Classification>> rules = positionedRules();
+    Map<String, Long> hitsById = new HashMap<>();
+    for (int i = 0; i < rules.size(); ++i) {
+      if (null != rules.get(i)) {
+        hitsById.merge(rules.get(i).getId(), matches[i], Long::sum);
+      }
+    }
+    return hitsById;
+  }
+
+  /**
+   * Gets how many times each classification has been the best classification since the last reset,
+   * or since the classifier was built.
+   *
+   * @return the number of classifications each classification was chosen for
+   * @throws IllegalStateException if the classifier wasn't built to count hits
+   */
+  public Map<Classification, Long> bestClassificationHits() {
+    long[] best = hits().best();
+    Map<Classification, Long> hitsByClassification = new HashMap<>();
+    for (int i = 0; i < best.length; ++i) {
+      if (best[i] != 0) {
+        hitsByClassification.merge(impl.classificationAt(i), best[i], Long::sum);
+      }
+    }
+    return hitsByClassification;
+  }
+
+  /**
+   * Zeroes the hit counts
+   *
+   * @throws IllegalStateException if the classifier wasn't built to count hits
+   */
+  public void resetHits() {
+    hits().reset();
+  }
+
+  private RuleHits hits() {
+    RuleHits hits = null == compilation ? null : compilation.classifier.hits();
+    if (null == hits) {
+      throw new IllegalStateException("hits aren't counted by this classifier");
+    }
+    return hits;
+  }
+
+  /**
+   * @return the rules, indexed by position, reading them again if they were streamed
+   */
+  private List<? extends MatchingConstraint<?, Classification>> positionedRules() {
+    if (null != compilation.rules) {
+      return compilation.rules;
+    }
+    List<? extends MatchingConstraint<?, Classification>> rules;
+    try {
+      rules = new ArrayList<>(this.rules.constraints());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    rules.sort(Comparator.comparingInt(rule -> ClassifierBuilder.order(rule.getPriority())));
+    return rules;
+  }
+
+  /**
+   * Configures and builds classifiers. Only {@link #withSampledEvents(int)} needs the jdk.jfr
+   * module; everything else works on runtimes linked without it.
+   *
+   * @param <Key>            the attribute key type
+   * @param <Input>          the type named the classified objects
+   * @param <Classification> the classification type
+   */
   public static class ClassifierBuilder<Key, Input, Classification> {
 
+    private static final int DAG_NODES_PER_RULE = 16;
+
     private final Schema<Key, Input> registry;
-    private final Map<Key, ConstraintAccumulator<Input, ? extends Mask>> matchers = new HashMap<>();
-    private final List<Classification> classifications = new ArrayList<>();
+    private int sampleInterval;
+    private int reorderInterval;
+    private ForkJoinPool pool;
+    private boolean decisionDag;
+    private boolean specialise;
+    private boolean countHits;
+    private ClassificationListener listener = ClassificationListener.NO_OP;
+    private int eventInterval;
+    private Key partitionKey;
 
     public ClassifierBuilder(Schema<Key, Input> registry) {
       this.registry = registry;
     }
 
+    /**
+     * Accumulates and freezes the matchers for different attributes concurrently
+     * on the common pool.
+     *
+     * @return this builder
+     */
+    public ClassifierBuilder<Key, Input, Classification> parallel() {
+      return parallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Accumulates and freezes the matchers for different attributes concurrently.
+     *
+     * @param pool the pool to build matchers on
+     * @return this builder
+     */
+    public ClassifierBuilder<Key, Input, Classification> parallel(ForkJoinPool pool) {
+      this.pool = Objects.requireNonNull(pool);
+      return this;
+    }
+
+    /**
+     * Lets the classifier reorder its matchers according to how often each rejects
+     * every constraint in observed traffic, rather than only by estimated selectivity.
+     *
+     * @param sampleInterval sample one in this many classifications on each thread
+     * @param reorderInterval reorder the matchers after this many samples
+     * @return this builder
+     */
+    public ClassifierBuilder<Key, Input, Classification> withAdaptiveMatcherOrdering(int sampleInterval, int reorderInterval) {
+      if (sampleInterval < 1 || reorderInterval < 1) {
+        throw new IllegalArgumentException("intervals must be positive");
+      }
+      this.sampleInterval = sampleInterval;
+      this.reorderInterval = reorderInterval;
+      return this;
+    }
+
+    /**
+     * Compiles rule sets made only of equality constraints into a decision DAG, rather
+     * than intersecting masks, when that is estimated to be faster. A DAG never looks up
+     * more attributes than there would be matchers and doesn't touch any masks, so it is
+     * used whenever it can be compiled within a node budget proportional to the number
+     * of rules. Rule sets which share many unconstrained attributes tend to exceed the
+     * budget and use masks instead.
+     *
+     * @return this builder
+     */
+    public ClassifierBuilder<Key, Input, Classification> withDecisionDag() {
+      this.decisionDag = true;
+      return this;
+    }
+
+    /**
+     * Generates a class for each classifier built which applies its matchers in
+     * straight-line code, so each call to a matcher can be inlined. Costs a class
+     * definition per build, so is best suited to long lived classifiers.
+     *
+     * @return this builder
+     */
+    public ClassifierBuilder<Key, Input, Classification> withSpecialisation() {
+      this.specialise = true;
+      return this;
+    }
+
+    /**
+     * Counts how often each rule matches and how often each classification is the best, which can
+     * be read with {@link ImmutableClassifier#ruleHits()} and {@link ImmutableClassifier#bestClassificationHits()}.
+     * Threads count into a bounded set of shared stripes, a few per core, which are only summed
+     * when read, so memory stays bounded however many threads classify. The price is an atomic
+     * increment for every match, which threads sharing a stripe may contend on, so classifications
+     * which match many rules cost more.
+     * Hits aren't counted by decision DAGs or partitioned classifiers, and rebuilt classifiers
+     * start counting from zero.
+     *
+     * @return this builder
+     */
+    public ClassifierBuilder<Key, Input, Classification> withHitCounting() {
+      this.countHits = true;
+      return this;
+    }
+
+    /**
+     * Reports how each input is classified to the listener: the number of constraints still
+     * satisfied after each matcher, which matcher rejected every constraint, and how long it
+     * took. Observed classifiers don't use specialised matcher classes, and decision DAGs
+     * aren't observed.
+     *
+     * @param listener the listener
+     * @return this builder
+     */
+    public ClassifierBuilder<Key, Input, Classification> withListener(ClassificationListener listener) {
+      this.listener = Objects.requireNonNull(listener);
+      return this;
+    }
+
+    /**
+     * Records one in every <code>interval</code> classifications on each thread as a
+     * <code>uk.co.openkappa.bitrules.Classification</code> flight recorder event, with its
+     * duration and how many matchers were applied. Nothing is recorded unless the event is
+     * enabled in a recording. Sampling requires the jdk.jfr module. Otherwise, flight recording
+     * is optional: build phases are recorded as <code>uk.co.openkappa.bitrules.BuildPhase</code>
+     * events when the module is present and the event is enabled, and aren't otherwise.
+     *
+     * @param interval record one in this many classifications on each thread
+     * @return this builder
+     * @throws UnsupportedOperationException if the jdk.jfr module isn't present
+     */
+    public ClassifierBuilder<Key, Input, Classification> withSampledEvents(int interval) {
+      if (interval < 1) {
+        throw new IllegalArgumentException("interval must be positive");
+      }
+      if (!FlightRecording.available()) {
+        throw new UnsupportedOperationException("sampled events require the jdk.jfr module");
+      }
+      this.eventInterval = interval;
+      return this;
+    }
+
+    /**
+     * Splits the rules into independent classifiers by the value they require of an attribute.
+     * Each input is only classified against the rules requiring its value, and the rules which
+     * don't constrain the attribute by equality, which are kept in a shared fallback partition.
+     * Each partition's masks are only as large as the partition, so this pays off when most rules
+     * pin a high cardinality attribute, such as a tenant, by equality. The other options on this
+     * builder apply to each partition.
+     *
+     * @param key the attribute to partition by, which must be able to be switched on by value
+     * @return this builder
+     */
+    public ClassifierBuilder<Key, Input, Classification> partitionBy(Key key) {
+      if (null == registry.getAttribute(key).extractor()) {
+        throw new IllegalArgumentException("can't partition by " + key);
+      }
+      this.partitionKey = key;
+      return this;
+    }
+
     /**
      * Build a classifier from some matchers
      *
@@ -66,57 +398,440 @@ public class ImmutableClassifier<Input, Classification> implements Classifier<In
      * @return the classifier
      */
     public ImmutableClassifier<Input, Classification> build(List<MatchingConstraint<Key, Classification>> constraints) {
+      return null == partitionKey ? unpartitioned(constraints) : partitioned(constraints);
+    }
+
+    private ImmutableClassifier<Input, Classification> unpartitioned(List<MatchingConstraint<Key, Classification>> constraints) {
+      if (decisionDag) {
+        List<MatchingConstraint<Key, Classification>> rules = new ArrayList<>(constraints);
+        rules.sort(Comparator.comparingInt(rd -> order(rd.getPriority())));
+        DecisionDag<Input, Classification> dag = DecisionDag.compile(registry, rules, DAG_NODES_PER_RULE * rules.size() + 1);
+        if (null != dag) {
+          return new ImmutableClassifier<>(dag, rules);
+        }
+      }
+      return new ImmutableClassifier<>(compilation(constraints));
+    }
+
+    /**
+     * Builds a classifier from a rule set without holding every rule in memory at once, by
+     * making two passes over its stream. The first pass only reads priorities, to work out
+     * where each rule goes, and the second adds each rule's constraints straight to the
+     * matchers. The rules aren't kept, so rebuilding the classifier reads the rule set again.
+     * Decision DAGs and partitioning need all the rules at once, so if either is enabled, or the
+     * rule set isn't a {@link StreamingRuleSet}, the rules are read into a list and built as usual.
+     *
+     * @param rules the rule set, which must stream the same rules in the same order each time
+     * @return the classifier
+     * @throws IOException if the rule set can't be read
+     */
+    public ImmutableClassifier<Input, Classification> build(RuleSet<Key, Classification> rules) throws IOException {
+      if (decisionDag || null != partitionKey || !(rules instanceof StreamingRuleSet)) {
+        return build(rules.constraints());
+      }
+      int[] positions;
+      try (Stream<MatchingConstraint<Key, Classification>> stream = rules.stream()) {
+        positions = positions(stream.mapToInt(MatchingConstraint::getPriority).toArray());
+      }
+      int max = positions.length;
+      return new ImmutableClassifier<>(max < TinyMask.MAX_CAPACITY
+              ? stream(rules, positions, TinyMask.FACTORY)
+              : max < MediumMask.MAX_CAPACITY
+              ? stream(rules, positions, MediumMask.factory(max))
+              : max < SmallMask.MAX_CAPACITY
+              ? stream(rules, positions, SmallMask.FACTORY)
+              : stream(rules, positions, HugeMask.FACTORY), rules);
+    }
+
+    /**
+     * Works out where each rule would be after a stable sort by descending priority,
+     * without sorting the rules themselves.
+     */
+    private static int[] positions(int[] priorities) {
+      long[] keys = new long[priorities.length];
+      for (int i = 0; i < priorities.length; ++i) {
+        keys[i] = ((long) order(priorities[i]) << 32) | i;
+      }
+      Arrays.sort(keys);
+      int[] positions = priorities;
+      for (int position = 0; position < keys.length; ++position) {
+        positions[(int) keys[position]] = position;
+      }
+      return positions;
+    }
+
+    private <MaskType extends Mask<MaskType>>
+    Compilation<Key, Input, Classification, MaskType> stream(RuleSet<Key, Classification> rules,
+                                                             int[] positions,
+                                                             MaskFactory<MaskType> maskFactory) throws IOException {
+      int max = positions.length;
+      Classification[] classifications = (Classification[]) new Object[max];
+      Map<Key, Column<Input, MaskType>> columns = new HashMap<>();
+      int count = 0;
+      BuildPhase accumulate = BuildPhase.start();
+      try (Stream<MatchingConstraint<Key, Classification>> stream = rules.stream()) {
+        Iterator<MatchingConstraint<Key, Classification>> it = stream.iterator();
+        while (it.hasNext()) {
+          MatchingConstraint<Key, Classification> rule = it.next();
+          if (count == max) {
+            throw new IllegalStateException("rule set changed while building");
+          }
+          int position = positions[count++];
+          classifications[position] = rule.getClassification();
+          for (Map.Entry<Key, Constraint> constraint : rule.getConstraints().entrySet()) {
+            columns.computeIfAbsent(constraint.getKey(), k -> new Column<>(registry.getAttribute(k).toMatcher(maskFactory, max)))
+                    .accumulate(constraint.getValue(), position);
+          }
+        }
+      }
+      if (count != max) {
+        throw new IllegalStateException("rule set changed while building");
+      }
+      accumulate.finish("accumulate", max, columns.size(), maskFactory);
+      Map<Key, Matcher<Input, MaskType>> matchers = new HashMap<>();
+      freeze(columns, matchers, max, maskFactory);
+      return compilation(null, null, matchers, maskFactory, max, maskFactory.contiguous(max), classifications);
+    }
+
+    private ImmutableClassifier<Input, Classification> partitioned(List<MatchingConstraint<Key, Classification>> constraints) {
+      Attribute<Input> attribute = registry.getAttribute(partitionKey);
+      List<MatchingConstraint<Key, Classification>> rules = new ArrayList<>(constraints);
+      rules.sort(Comparator.comparingInt(rd -> order(rd.getPriority())));
+      Classification[] classifications = (Classification[]) new Object[rules.size()];
+      Map<Object, List<MatchingConstraint<Key, Classification>>> partitionRules = new HashMap<>();
+      Map<Object, IntStream.Builder> partitionIndices = new HashMap<>();
+      List<MatchingConstraint<Key, Classification>> fallbackRules = new ArrayList<>();
+      IntStream.Builder fallbackIndices = IntStream.builder();
+      for (int i = 0; i < rules.size(); ++i) {
+        MatchingConstraint<Key, Classification> rule = rules.get(i);
+        classifications[i] = rule.getClassification();
+        Constraint constraint = rule.getConstraints().get(partitionKey);
+        if (null != constraint && constraint.getOperation() == Operation.EQ) {
+          Object value = attribute.normalise(constraint.getValue());
+          // the partition is selected by value, so the constraint doesn't need to be matched again
+          Map<Key, Constraint> remaining = new HashMap<>(rule.getConstraints());
+          remaining.remove(partitionKey);
+          partitionRules.computeIfAbsent(value, v -> new ArrayList<>())
+                  .add(new MatchingConstraint<>(rule.getId(), remaining, rule.getPriority(), rule.getClassification()));
+          partitionIndices.computeIfAbsent(value, v -> IntStream.builder()).add(i);
+        } else {
+          fallbackRules.add(rule);
+          fallbackIndices.add(i);
+        }
+      }
+      Map<Object, PartitionedClassifier.Partition<Input, Classification>> partitions = new HashMap<>();
+      partitionRules.forEach((value, partition) -> partitions.put(value,
+              new PartitionedClassifier.Partition<>(unpartitioned(partition), partitionIndices.get(value).build().toArray())));
+      PartitionedClassifier.Partition<Input, Classification> fallback = fallbackRules.isEmpty() ? null
+              : new PartitionedClassifier.Partition<>(unpartitioned(fallbackRules), fallbackIndices.build().toArray());
+      return new ImmutableClassifier<>(new PartitionedClassifier<>(attribute.extractor(), partitions, fallback, classifications), rules);
+    }
+
+    /**
+     * Builds a classifier from a previous classifier built with the same schema, and a change
+     * to its rules, matched by rule id. If the change only modifies the constraints or
+     * classifications of existing rules, or removes rules, the matchers of attributes the change
+     * doesn't touch are shared with the previous classifier, and only the touched attributes are
+     * rebuilt. Removed rules are masked out rather than compacted away. Otherwise, for instance if
+     * rules are added or priorities change, or either classifier is a decision DAG or partitioned,
+     * every rule is rebuilt. Classifiers built from a streamed rule set are rebuilt from the rule
+     * set as it is now.
+     *
+     * @param previous the classifier to start from
+     * @param upserts rules to add, or replace the rule with the same id
+     * @param removals the ids of rules to remove
+     * @return the classifier
+     */
+    public ImmutableClassifier<Input, Classification> rebuild(ImmutableClassifier<Input, Classification> previous,
+                                                              List<MatchingConstraint<Key, Classification>> upserts,
+                                                              Collection<String> removals) {
+      if (null == previous.compilation || null == previous.compilation.rules || null != partitionKey) {
+        List<MatchingConstraint<Key, Classification>> rules;
+        try {
+          rules = (List<MatchingConstraint<Key, Classification>>) (List) previous.rules.constraints();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return build(merge(rules, upserts, removals));
+      }
+      return rebuild((Compilation<Key, Input, Classification, ?>) previous.compilation, upserts, removals);
+    }
+
+    /**
+     * Builds a classifier whose indices are the positions of the constraints
+     * after a stable sort by descending priority.
+     */
+    MaskedClassifier<?, Input, Classification> compile(List<MatchingConstraint<Key, Classification>> constraints) {
+      return compilation(constraints).classifier;
+    }
+
+    private Compilation<Key, Input, Classification, ?> compilation(List<MatchingConstraint<Key, Classification>> constraints) {
       int maxPriority = constraints.size();
       return maxPriority < TinyMask.MAX_CAPACITY
-              ? new ImmutableClassifier<>(build(constraints, TinyMask.FACTORY, maxPriority))
+              ? build(constraints, TinyMask.FACTORY, maxPriority)
+              : maxPriority < MediumMask.MAX_CAPACITY
+              ? build(constraints, MediumMask.factory(maxPriority), maxPriority)
               : maxPriority < SmallMask.MAX_CAPACITY
-                ? new ImmutableClassifier<>(build(constraints, SmallMask.FACTORY, maxPriority))
-                : new ImmutableClassifier<>(build(constraints, HugeMask.FACTORY, maxPriority));
+                ? build(constraints, SmallMask.FACTORY, maxPriority)
+                : build(constraints, HugeMask.FACTORY, maxPriority);
     }
 
     private <MaskType extends Mask<MaskType>>
-    MaskedClassifier<MaskType, Input, Classification> build(List<MatchingConstraint<Key, Classification>> specs,
+    Compilation<Key, Input, Classification, MaskType> build(List<MatchingConstraint<Key, Classification>> specs,
                                                             MaskFactory<MaskType> maskFactory,
                                                             int max) {
-      PrimitiveIterator.OfInt sequence = IntStream.iterate(0, i -> i + 1).iterator();
-      specs.stream().sorted(Comparator.comparingInt(rd -> order(rd.getPriority())))
-                    .forEach(rule -> addMatchingConstraint(rule, sequence.nextInt(), maskFactory, max));
-      return new MaskedClassifier<>((Classification[])classifications.toArray(), freezeMatchers(), maskFactory.contiguous(max));
+      List<MatchingConstraint<Key, Classification>> rules = new ArrayList<>(specs);
+      rules.sort(Comparator.comparingInt(rd -> order(rd.getPriority())));
+      Classification[] classifications = (Classification[]) new Object[rules.size()];
+      Map<String, Integer> positions = new HashMap<>();
+      Map<Key, Column<Input, MaskType>> columns = new HashMap<>();
+      for (int i = 0; i < rules.size(); ++i) {
+        int priority = i;
+        MatchingConstraint<Key, Classification> rule = rules.get(i);
+        classifications[i] = rule.getClassification();
+        // ids are only used to find rules to replace incrementally, so duplicated ids force a full rebuild
+        positions.merge(rule.getId(), i, (x, y) -> -1);
+        rule.getConstraints().forEach((key, condition) -> columns
+                .computeIfAbsent(key, k -> new Column<>(registry.getAttribute(k).toMatcher(maskFactory, max)))
+                .add(condition, priority));
+      }
+      accumulate(columns, max, maskFactory);
+      Map<Key, Matcher<Input, MaskType>> matchers = new HashMap<>();
+      freeze(columns, matchers, max, maskFactory);
+      return compilation(rules, positions, matchers, maskFactory, max, maskFactory.contiguous(max), classifications);
     }
 
     private <MaskType extends Mask<MaskType>>
-    void addMatchingConstraint(MatchingConstraint<Key, Classification> matchInfo,
-                               int priority,
-                               MaskFactory<MaskType> maskFactory,
-                               int max) {
-      classifications.add(matchInfo.getClassification());
-      matchInfo.getConstraints().forEach((key, condition) -> memoisedMatcher(key, maskFactory, max).addConstraint(condition, priority));
+    ImmutableClassifier<Input, Classification> rebuild(Compilation<Key, Input, Classification, MaskType> previous,
+                                                       List<MatchingConstraint<Key, Classification>> upserts,
+                                                       Collection<String> removals) {
+      List<MatchingConstraint<Key, Classification>> rules = new ArrayList<>(previous.rules);
+      Classification[] classifications = previous.classifications.clone();
+      MaskType live = previous.live.clone();
+      Set<Key> touched = new HashSet<>();
+      for (MatchingConstraint<Key, Classification> upsert : upserts) {
+        int position = previous.positions.getOrDefault(upsert.getId(), -1);
+        MatchingConstraint<Key, Classification> existing = position < 0 ? null : rules.get(position);
+        if (null == existing || existing.getPriority() != upsert.getPriority()) {
+          return build(merge(previous.rules, upserts, removals));
+        }
+        addTouchedAttributes(existing, upsert, touched);
+        rules.set(position, upsert);
+        classifications[position] = upsert.getClassification();
+      }
+      for (String id : removals) {
+        int position = previous.positions.getOrDefault(id, -1);
+        if (position < 0) {
+          return build(merge(previous.rules, upserts, removals));
+        }
+        rules.set(position, null);
+        live.remove(position);
+      }
+      Map<Key, Matcher<Input, MaskType>> matchers = new HashMap<>(previous.matchers);
+      Map<Key, Column<Input, MaskType>> columns = new HashMap<>();
+      for (int i = 0; i < rules.size(); ++i) {
+        MatchingConstraint<Key, Classification> rule = rules.get(i);
+        if (null != rule) {
+          for (Key key : touched) {
+            Constraint condition = rule.getConstraints().get(key);
+            if (null != condition) {
+              columns.computeIfAbsent(key, k -> new Column<>(registry.getAttribute(k).toMatcher(previous.maskFactory, previous.max)))
+                      .add(condition, i);
+            }
+          }
+        }
+      }
+      matchers.keySet().removeAll(touched);
+      accumulate(columns, previous.max, previous.maskFactory);
+      freeze(columns, matchers, previous.max, previous.maskFactory);
+      return new ImmutableClassifier<>(compilation(rules, previous.positions, matchers, previous.maskFactory, previous.max, live, classifications));
     }
 
+    private List<MatchingConstraint<Key, Classification>> merge(List<MatchingConstraint<Key, Classification>> previous,
+                                                                List<MatchingConstraint<Key, Classification>> upserts,
+                                                                Collection<String> removals) {
+      Map<String, MatchingConstraint<Key, Classification>> replacements = new LinkedHashMap<>();
+      for (MatchingConstraint<Key, Classification> upsert : upserts) {
+        replacements.put(upsert.getId(), upsert);
+      }
+      Set<String> removed = new HashSet<>(removals);
+      List<MatchingConstraint<Key, Classification>> rules = new ArrayList<>(previous.size() + upserts.size());
+      for (MatchingConstraint<Key, Classification> rule : previous) {
+        if (null != rule && !removed.contains(rule.getId())) {
+          MatchingConstraint<Key, Classification> replacement = replacements.remove(rule.getId());
+          rules.add(null == replacement ? rule : replacement);
+        }
+      }
+      rules.addAll(replacements.values());
+      return rules;
+    }
+
+    /**
+     * Adds each column's buffered constraints to its accumulator, concurrently if a pool has been
+     * supplied. Attributes are independent of each other, so each column is a separate task.
+     */
     private <MaskType extends Mask<MaskType>>
-    ConstraintAccumulator<Input, MaskType> memoisedMatcher(Key key, MaskFactory<MaskType> maskFactory, int max) {
-      ConstraintAccumulator<Input, MaskType> matcher = (ConstraintAccumulator<Input, MaskType>)matchers.get(key);
-      if (null == matcher) {
-        matcher = registry.getAttribute(key).toMatcher(maskFactory, max);
-        matchers.put(key, matcher);
+    void accumulate(Map<Key, Column<Input, MaskType>> columns,
+                    int rules,
+                    MaskFactory<MaskType> maskFactory) {
+      BuildPhase accumulate = BuildPhase.start();
+      if (null == pool || columns.size() < 2) {
+        columns.values().forEach(Column::accumulate);
+      } else {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(columns.size());
+        columns.values().forEach(column -> tasks.add(pool.submit((Runnable) column::accumulate)));
+        tasks.forEach(ForkJoinTask::join);
       }
-      return matcher;
+      accumulate.finish("accumulate", rules, columns.size(), maskFactory);
     }
 
+    /**
+     * Freezes each column, concurrently if a pool has been supplied.
+     */
     private <MaskType extends Mask<MaskType>>
-    Matcher<Input, MaskType>[] freezeMatchers() {
-      List<Matcher<Input, MaskType>> frozen = new ArrayList<>(matchers.size());
-      for (ConstraintAccumulator<Input, ? extends Mask> matcher : matchers.values()) {
-        frozen.add((Matcher<Input, MaskType>) matcher.freeze());
+    void freeze(Map<Key, Column<Input, MaskType>> columns,
+                Map<Key, Matcher<Input, MaskType>> matchers,
+                int rules,
+                MaskFactory<MaskType> maskFactory) {
+      BuildPhase freeze = BuildPhase.start();
+      if (null == pool || columns.size() < 2) {
+        columns.forEach((key, column) -> matchers.put(key, column.freeze()));
+      } else {
+        Map<Key, ForkJoinTask<Matcher<Input, MaskType>>> tasks = new HashMap<>();
+        columns.forEach((key, column) -> tasks.put(key, pool.submit(column::freeze)));
+        tasks.forEach((key, task) -> matchers.put(key, task.join()));
+      }
+      freeze.finish("freeze", rules, columns.size(), maskFactory);
+    }
+
+    private void addTouchedAttributes(MatchingConstraint<Key, Classification> existing,
+                                      MatchingConstraint<Key, Classification> replacement,
+                                      Set<Key> touched) {
+      for (Map.Entry<Key, Constraint> entry : existing.getConstraints().entrySet()) {
+        if (!entry.getValue().equals(replacement.getConstraints().get(entry.getKey()))) {
+          touched.add(entry.getKey());
+        }
+      }
+      for (Map.Entry<Key, Constraint> entry : replacement.getConstraints().entrySet()) {
+        if (!entry.getValue().equals(existing.getConstraints().get(entry.getKey()))) {
+          touched.add(entry.getKey());
+        }
       }
-      return frozen.stream()
-              .sorted(Comparator.comparingInt(x -> (int)(x.averageSelectivity() * 1000)))
+    }
+
+    private <MaskType extends Mask<MaskType>>
+    Compilation<Key, Input, Classification, MaskType> compilation(List<MatchingConstraint<Key, Classification>> rules,
+                                                                  Map<String, Integer> positions,
+                                                                  Map<Key, Matcher<Input, MaskType>> matchers,
+                                                                  MaskFactory<MaskType> maskFactory,
+                                                                  int max,
+                                                                  MaskType live,
+                                                                  Classification[] classifications) {
+      BuildPhase sort = BuildPhase.start();
+      Matcher<Input, MaskType>[] ordered = matchers.values().stream()
+              .sorted(Comparator.comparingDouble(Matcher::averageSelectivity))
               .toArray(Matcher[]::new);
+      sort.finish("sort matchers", max, ordered.length, maskFactory);
+      MaskedClassifier<MaskType, Input, Classification> classifier =
+              new MaskedClassifier<>(classifications, ordered, live, sampleInterval, reorderInterval);
+      if (countHits) {
+        classifier = classifier.counting();
+      }
+      if (ClassificationListener.NO_OP != listener) {
+        classifier = classifier.observed(listener);
+      } else if (specialise) {
+        classifier = classifier.specialised();
+      }
+      if (eventInterval > 0) {
+        classifier = classifier.recording(eventInterval);
+      }
+      return new Compilation<>(rules, positions, matchers, maskFactory, max, live, classifications, classifier);
     }
 
-    private static int order(int priority) {
+    static int order(int priority) {
       return (1 << 31) - priority - 1;
     }
   }
 
+  /**
+   * The constraints on a single attribute, in priority order, waiting to be accumulated.
+   */
+  private static final class Column<Input, MaskType extends Mask<MaskType>> {
+    private final ConstraintAccumulator<Input, MaskType> accumulator;
+    private Constraint[] constraints = new Constraint[16];
+    private int[] priorities = new int[16];
+    private int count;
+
+    private Column(ConstraintAccumulator<Input, MaskType> accumulator) {
+      this.accumulator = accumulator;
+    }
+
+    void add(Constraint constraint, int priority) {
+      if (count == constraints.length) {
+        constraints = Arrays.copyOf(constraints, count * 2);
+        priorities = Arrays.copyOf(priorities, count * 2);
+      }
+      constraints[count] = constraint;
+      priorities[count] = priority;
+      ++count;
+    }
+
+    /**
+     * Adds the constraint straight to the accumulator, so it can't be accumulated concurrently.
+     */
+    void accumulate(Constraint constraint, int priority) {
+      accumulator.addConstraint(constraint, priority);
+    }
+
+    /**
+     * Adds the buffered constraints to the accumulator.
+     */
+    void accumulate() {
+      for (int i = 0; i < count; ++i) {
+        accumulator.addConstraint(constraints[i], priorities[i]);
+      }
+      constraints = null;
+      priorities = null;
+      count = 0;
+    }
+
+    Matcher<Input, MaskType> freeze() {
+      return accumulator.freeze();
+    }
+  }
+
+  /**
+   * Everything needed to derive a new classifier from this one without starting from scratch.
+   * Retired rules are null in the rule list and absent from the live mask. The rules and
+   * positions are null if the rules were streamed.
+   */
+  static final class Compilation<Key, Input, Classification, MaskType extends Mask<MaskType>> {
+    final List<MatchingConstraint<Key, Classification>> rules;
+    private final Map<String, Integer> positions;
+    final Map<Key, Matcher<Input, MaskType>> matchers;
+    final MaskFactory<MaskType> maskFactory;
+    final int max;
+    final MaskType live;
+    final Classification[] classifications;
+    final MaskedClassifier<MaskType, Input, Classification> classifier;
+
+    private Compilation(List<MatchingConstraint<Key, Classification>> rules,
+                        Map<String, Integer> positions,
+                        Map<Key, Matcher<Input, MaskType>> matchers,
+                        MaskFactory<MaskType> maskFactory,
+                        int max,
+                        MaskType live,
+                        Classification[] classifications,
+                        MaskedClassifier<MaskType, Input, Classification> classifier) {
+      this.rules = rules;
+      this.positions = positions;
+      this.matchers = matchers;
+      this.maskFactory = maskFactory;
+      this.max = max;
+      this.live = live;
+      this.classifications = classifications;
+      this.classifier = classifier;
+    }
+  }
+
 }
@@ -1,5 +1,8 @@
 package uk.co.openkappa.bitrules;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 
 public interface Mask<T extends Mask> {
@@ -23,11 +26,21 @@ public interface Mask<T extends Mask> {
   T orNot(T other, int max);
   T inPlaceAnd(T other);
   T inPlaceOr(T other);
+  T resetTo(T other);
   IntStream stream();
+  void forEach(IntConsumer consumer);
   int first();
   T clone();
   void optimise();
   boolean isEmpty();
+  boolean isSubsetOf(T other);
   int cardinality();
 
+  /**
+   * Writes the mask so it can be read back by {@link uk.co.openkappa.bitrules.masks.MaskFactory#read}
+   * @param out the output
+   * @throws IOException if the mask can't be written
+   */
+  void write(DataOutput out) throws IOException;
+
 }
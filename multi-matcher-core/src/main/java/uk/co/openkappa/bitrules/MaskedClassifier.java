@@ -1,23 +1,163 @@
 package uk.co.openkappa.bitrules;
 
+import uk.co.openkappa.bitrules.codegen.MatcherSequence;
+import uk.co.openkappa.bitrules.codegen.Specialiser;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
 import java.util.stream.Stream;
 
 public class MaskedClassifier<MaskType extends Mask<MaskType>, Input, Classification> implements Classifier<Input, Classification> {
 
+  private static final int MAX_SEQUENCES = 16;
+
   private final Classification[] classifications;
-  private final Matcher<Input, MaskType>[] matchers;
-  private final Mask<MaskType> mask;
+  private final MaskType mask;
+  private final ThreadLocal<Scratch<MaskType>> scratch;
+  private final MatcherStatistics<Input, MaskType> statistics;
+  private final RuleHits hits;
+  private final ClassificationListener listener;
+  private final int eventInterval;
+  private volatile Matcher<Input, MaskType>[] matchers;
+  private volatile MatcherSequence<Input, MaskType> sequence;
+  private final Map<List<Matcher<Input, MaskType>>, MatcherSequence<Input, MaskType>> sequences = new ConcurrentHashMap<>();
+  private final AtomicBoolean specialising = new AtomicBoolean();
+
+  public MaskedClassifier(Classification[] classifications, Matcher<Input, MaskType>[] matchers, MaskType mask) {
+    this(classifications, matchers, mask, 0, 0);
+  }
 
-  public MaskedClassifier(Classification[] classifications, Matcher<Input, MaskType>[] matchers, Mask<MaskType> mask) {
+  /**
+   * Creates a classifier which can reorder its matchers according to the traffic it sees.
+   * One in every <code>sampleInterval</code> classifications per thread evaluates every
+   * matcher independently to see how often it would empty the context on its own, and
+   * every <code>reorderInterval</code> samples the matchers are reordered so that those
+   * which most often reject everything are applied first. The reordered matchers are
+   * published without locking, so a classification in progress uses whichever order
+   * it read when it started.
+   * @param classifications the classifications, in priority order
+   * @param matchers the matchers in their initial order
+   * @param mask a mask containing every constraint
+   * @param sampleInterval how many classifications per sample, or zero to disable reordering
+   * @param reorderInterval how many samples between reorderings
+   */
+  public MaskedClassifier(Classification[] classifications,
+                          Matcher<Input, MaskType>[] matchers,
+                          MaskType mask,
+                          int sampleInterval,
+                          int reorderInterval) {
+    this(classifications, matchers, mask, sampleInterval > 0
+            ? new MatcherStatistics<>(matchers, sampleInterval, Math.max(1, reorderInterval))
+            : null, null, null, null, 0);
+  }
+
+  private MaskedClassifier(Classification[] classifications,
+                           Matcher<Input, MaskType>[] matchers,
+                           MaskType mask,
+                           MatcherStatistics<Input, MaskType> statistics,
+                           MatcherSequence<Input, MaskType> sequence,
+                           RuleHits hits,
+                           ClassificationListener listener,
+                           int eventInterval) {
     this.classifications = classifications;
     this.matchers = matchers;
     this.mask = mask;
+    this.scratch = ThreadLocal.withInitial(this::newScratch);
+    this.statistics = statistics;
+    this.sequence = sequence;
+    if (null != sequence) {
+      sequences.put(Arrays.asList(matchers), sequence);
+    }
+    this.hits = hits;
+    this.listener = listener;
+    this.eventInterval = eventInterval;
+  }
+
+  /**
+   * Gets a classifier which applies its matchers through a class generated for
+   * this classifier, so the JIT sees a single matcher type at each call site.
+   * If the matchers are reordered adaptively, a class is generated in the background
+   * for each new order, and the old order stays in use until it is ready. Classes are
+   * kept for orders seen before, up to a limit, after which the order is no longer changed.
+   * @return a specialised classifier
+   */
+  MaskedClassifier<MaskType, Input, Classification> specialised() {
+    return new MaskedClassifier<>(classifications, matchers, mask, statistics, Specialiser.specialise(matchers), hits, listener, eventInterval);
+  }
+
+  /**
+   * Gets a classifier which counts how often each constraint matches and is the
+   * best match, on each thread separately.
+   * @return a counting classifier
+   */
+  MaskedClassifier<MaskType, Input, Classification> counting() {
+    return new MaskedClassifier<>(classifications, matchers, mask, statistics, sequence, new RuleHits(classifications.length), listener, eventInterval);
+  }
+
+  /**
+   * Gets a classifier sharing this classifier's matchers which will never report
+   * the constraint at the index. Only the mask is copied.
+   * @param index the index of the constraint to retire
+   * @return a classifier without the constraint
+   */
+  MaskedClassifier<MaskType, Input, Classification> without(int index) {
+    MaskType live = mask.clone();
+    live.remove(index);
+    return new MaskedClassifier<>(classifications, matchers, live, statistics, sequence, hits, listener, eventInterval);
+  }
+
+  /**
+   * Gets a classifier which reports how each input is classified to the listener.
+   * Matchers are applied one at a time rather than through a specialised class.
+   * @param listener the listener
+   * @return an observed classifier
+   */
+  MaskedClassifier<MaskType, Input, Classification> observed(ClassificationListener listener) {
+    return new MaskedClassifier<>(classifications, matchers, mask, statistics, sequence, hits,
+            ClassificationListener.NO_OP == listener ? null : listener, eventInterval);
+  }
+
+  /**
+   * Gets a classifier which records one in every <code>interval</code> classifications
+   * on each thread as a flight recorder event, when the event is enabled.
+   * @param interval how many classifications per event
+   * @return a sampling classifier
+   */
+  MaskedClassifier<MaskType, Input, Classification> recording(int interval) {
+    return new MaskedClassifier<>(classifications, matchers, mask, statistics, sequence, hits, listener, interval);
+  }
+
+  /**
+   * @return the hit counts, or null if hits aren't counted
+   */
+  RuleHits hits() {
+    return hits;
+  }
+
+  /**
+   * @return the specialised sequence currently applied, or null if not specialised
+   */
+  MatcherSequence<Input, MaskType> sequence() {
+    return sequence;
+  }
+
+  /**
+   * @return the matchers, in the order they are currently applied
+   */
+  Matcher<Input, MaskType>[] matchers() {
+    return matchers;
   }
 
   @Override
   public Stream<Classification> classifications(Input value) {
-    return match(value).stream().mapToObj(i -> classifications[i]);
+    return match(value).clone().stream().mapToObj(i -> classifications[i]);
   }
 
   @Override
@@ -28,14 +168,278 @@ public class MaskedClassifier<MaskType extends Mask<MaskType>, Input, Classifica
             : Optional.of(classifications[matches.first()]);
   }
 
-  private MaskType match(Input value) {
-    MaskType context = mask.clone();
-    for (Matcher<Input, MaskType> matcher : matchers) {
-      context = matcher.match(value, context);
-      if (context.isEmpty()) {
+  @Override
+  public int classificationIndex(Input value) {
+    MaskType matches = match(value);
+    return matches.isEmpty() ? -1 : matches.first();
+  }
+
+  @Override
+  public Classification classificationAt(int index) {
+    return classifications[index];
+  }
+
+  @Override
+  public Classification classificationOrElse(Input value, Classification defaultValue) {
+    MaskType matches = match(value);
+    return matches.isEmpty() ? defaultValue : classifications[matches.first()];
+  }
+
+  @Override
+  public void forEachClassificationIndex(Input value, IntConsumer consumer) {
+    match(value).forEach(consumer);
+  }
+
+  @Override
+  public <Target extends Collection<? super Classification>> Target classifications(Input value, Target target) {
+    match(value).forEach(index -> target.add(classifications[index]));
+    return target;
+  }
+
+  @Override
+  public int[] classifyAll(List<Input> values, int[] indices) {
+    return classifyAll(values, indices, scratch.get());
+  }
+
+  /**
+   * Classifies a batch of values, applying each matcher to every value in the
+   * batch before moving on to the next matcher. Values which have already been
+   * rejected by every constraint are skipped by subsequent matchers.
+   * @param values the values to classify
+   * @param indices receives the index of the best matching constraint, or -1, for each value
+   * @param scratch the scratch masks, which must have been created by this classifier
+   * @return the indices
+   */
+  public int[] classifyAll(List<Input> values, int[] indices, Scratch<MaskType> scratch) {
+    int size = values.size();
+    MaskType[] contexts = scratch.contexts(size, mask);
+    int[] live = scratch.live(size);
+    for (int i = 0; i < size; ++i) {
+      contexts[i] = contexts[i].resetTo(mask);
+      live[i] = i;
+    }
+    int remaining = size;
+    Matcher<Input, MaskType>[] matchers = this.matchers;
+    for (int m = 0; m < matchers.length && remaining > 0; ++m) {
+      Matcher<Input, MaskType> matcher = matchers[m];
+      int next = 0;
+      for (int j = 0; j < remaining; ++j) {
+        int i = live[j];
+        MaskType context = matcher.match(values.get(i), contexts[i], scratch.temp);
+        contexts[i] = context;
+        if (!context.isEmpty()) {
+          live[next++] = i;
+        }
+      }
+      remaining = next;
+    }
+    for (int i = 0; i < size; ++i) {
+      indices[i] = contexts[i].isEmpty() ? -1 : contexts[i].first();
+      if (null != scratch.stripe) {
+        scratch.stripe.record(contexts[i]);
+      }
+    }
+    return indices;
+  }
+
+  /**
+   * Creates masks which can be passed to {@link #match(Object, Scratch)} by
+   * callers which manage their own scratch space. The masks must not be
+   * shared between threads.
+   * @return new scratch masks for this classifier
+   */
+  public Scratch<MaskType> newScratch() {
+    return new Scratch<>(mask.clone(), mask.clone(), null == hits ? null : hits.stripe());
+  }
+
+  /**
+   * Matches the value without allocating masks.
+   * @param value the value to classify
+   * @param scratch the scratch masks, which must have been created by this classifier
+   * @return the identities of the satisfied constraints, which will be overwritten
+   * the next time the scratch masks are used.
+   */
+  public MaskType match(Input value, Scratch<MaskType> scratch) {
+    if (null != statistics && ++scratch.calls >= statistics.sampleInterval) {
+      scratch.calls = 0;
+      sample(value, scratch);
+    }
+    if (0 != eventInterval && ++scratch.events >= eventInterval) {
+      scratch.events = 0;
+      return record(value, scratch);
+    }
+    if (null != listener) {
+      return observe(value, scratch);
+    }
+    MaskType context = scratch.context.resetTo(mask);
+    MatcherSequence<Input, MaskType> sequence = this.sequence;
+    if (null != sequence) {
+      context = sequence.match(value, context, scratch.temp);
+    } else {
+      for (Matcher<Input, MaskType> matcher : matchers) {
+        context = matcher.match(value, context, scratch.temp);
+        if (context.isEmpty()) {
+          break;
+        }
+      }
+    }
+    if (null != scratch.stripe) {
+      scratch.stripe.record(context);
+    }
+    return context;
+  }
+
+  private MaskType observe(Input value, Scratch<MaskType> scratch) {
+    ClassificationListener listener = this.listener;
+    long start = System.nanoTime();
+    MaskType context = scratch.context.resetTo(mask);
+    Matcher<Input, MaskType>[] matchers = this.matchers;
+    int emptiedAt = -1;
+    for (int i = 0; i < matchers.length; ++i) {
+      context = matchers[i].match(value, context, scratch.temp);
+      int cardinality = context.cardinality();
+      listener.stage(i, cardinality);
+      if (cardinality == 0) {
+        emptiedAt = i;
+        break;
+      }
+    }
+    if (null != scratch.stripe) {
+      scratch.stripe.record(context);
+    }
+    listener.classified(System.nanoTime() - start, emptiedAt);
+    return context;
+  }
+
+  private MaskType record(Input value, Scratch<MaskType> scratch) {
+    // sampled classifications are still reported to the listener, if there is one
+    ClassificationListener listener = this.listener;
+    ClassificationEvent event = new ClassificationEvent();
+    event.begin();
+    long start = null == listener ? 0L : System.nanoTime();
+    MaskType context = scratch.context.resetTo(mask);
+    Matcher<Input, MaskType>[] matchers = this.matchers;
+    int applied = 0;
+    int emptiedAt = -1;
+    while (applied < matchers.length) {
+      context = matchers[applied++].match(value, context, scratch.temp);
+      if (null != listener) {
+        int cardinality = context.cardinality();
+        listener.stage(applied - 1, cardinality);
+        if (cardinality == 0) {
+          emptiedAt = applied - 1;
+          break;
+        }
+      } else if (context.isEmpty()) {
         break;
       }
     }
+    if (null != listener) {
+      listener.classified(System.nanoTime() - start, emptiedAt);
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.matchers = applied;
+      event.available = matchers.length;
+      event.matched = !context.isEmpty();
+      event.commit();
+    }
+    if (null != scratch.stripe) {
+      scratch.stripe.record(context);
+    }
     return context;
   }
+
+  private MaskType match(Input value) {
+    return match(value, scratch.get());
+  }
+
+  private void sample(Input value, Scratch<MaskType> scratch) {
+    MatcherStatistics<Input, MaskType> statistics = this.statistics;
+    Matcher<Input, MaskType>[] matchers = statistics.matchers;
+    int total = Math.max(1, mask.cardinality());
+    for (int i = 0; i < matchers.length; ++i) {
+      MaskType context = matchers[i].match(value, scratch.context.resetTo(mask), scratch.temp);
+      statistics.record(i, context.cardinality(), total);
+    }
+    if (statistics.sampled()) {
+      Matcher<Input, MaskType>[] reordered = statistics.reorder();
+      if (Arrays.equals(reordered, this.matchers)) {
+        return;
+      }
+      if (null == sequence) {
+        this.matchers = reordered;
+      } else {
+        respecialise(reordered);
+      }
+    }
+  }
+
+  /**
+   * Switches to a specialised sequence for the order, generating its class on the
+   * common pool rather than the classifying thread if it hasn't been seen before.
+   */
+  private void respecialise(Matcher<Input, MaskType>[] reordered) {
+    List<Matcher<Input, MaskType>> order = Arrays.asList(reordered);
+    MatcherSequence<Input, MaskType> cached = sequences.get(order);
+    if (null != cached) {
+      publish(reordered, cached);
+    } else if (sequences.size() < MAX_SEQUENCES && specialising.compareAndSet(false, true)) {
+      ForkJoinPool.commonPool().execute(() -> {
+        try {
+          publish(reordered, sequences.computeIfAbsent(order, o -> Specialiser.specialise(reordered)));
+        } finally {
+          specialising.set(false);
+        }
+      });
+    }
+  }
+
+  private void publish(Matcher<Input, MaskType>[] matchers, MatcherSequence<Input, MaskType> sequence) {
+    this.sequence = sequence;
+    this.matchers = matchers;
+  }
+
+  /**
+   * Reusable masks for intermediate match results.
+   * @param <MaskType> the type of mask
+   */
+  public static final class Scratch<MaskType extends Mask<MaskType>> {
+    private final MaskType context;
+    private final MaskType temp;
+    private final RuleHits.Stripe stripe;
+    private MaskType[] contexts;
+    private int[] live;
+    private int calls;
+    private int events;
+
+    private Scratch(MaskType context, MaskType temp, RuleHits.Stripe stripe) {
+      this.context = context;
+      this.temp = temp;
+      this.stripe = stripe;
+    }
+
+    @SuppressWarnings("unchecked")
+    private MaskType[] contexts(int size, MaskType template) {
+      int available = null == contexts ? 0 : contexts.length;
+      if (available < size) {
+        MaskType[] grown = (MaskType[]) new Mask[Math.max(size, available * 2)];
+        if (available > 0) {
+          System.arraycopy(contexts, 0, grown, 0, available);
+        }
+        for (int i = available; i < grown.length; ++i) {
+          grown[i] = template.clone();
+        }
+        contexts = grown;
+      }
+      return contexts;
+    }
+
+    private int[] live(int size) {
+      if (null == live || live.length < size) {
+        live = new int[Math.max(size, null == live ? 0 : live.length * 2)];
+      }
+      return live;
+    }
+  }
 }
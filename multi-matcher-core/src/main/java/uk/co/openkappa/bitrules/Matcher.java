@@ -1,6 +1,9 @@
 package uk.co.openkappa.bitrules;
 
-public interface Matcher<T, MaskType> {
+import java.io.DataOutput;
+import java.io.IOException;
+
+public interface Matcher<T, MaskType extends Mask<MaskType>> {
   /**
    * Returns the identities named all named the constraints which are satisfied bt the value,
    * so long as they have not already been invalidated by prior mismatches on other attributes
@@ -8,9 +11,32 @@ public interface Matcher<T, MaskType> {
    * @param context the identities named constraints satisfied prior to the match
    * @return the identities named all constrainst still satisfied
    */
-  MaskType match(T value, MaskType context);
+  default MaskType match(T value, MaskType context) {
+    return match(value, context, context.clone());
+  }
+
+  /**
+   * Like {@link #match(Object, Mask)} but uses a caller supplied mask for intermediate
+   * results, so that no masks need to be allocated. The contents of the scratch mask are
+   * overwritten, and it must not be the same instance as the context.
+   * @param value the value to match
+   * @param context the identities named constraints satisfied prior to the match
+   * @param scratch a mask from the same factory as the context, overwritten by the match
+   * @return the identities named all constrainst still satisfied
+   */
+  MaskType match(T value, MaskType context, MaskType scratch);
 
   default float averageSelectivity() {
     return 1;
   }
+
+  /**
+   * Writes the frozen matcher to a snapshot, to be restored by
+   * {@link ConstraintAccumulator#restore} from the same attribute.
+   * @param out the output
+   * @throws IOException if the matcher can't be written
+   */
+  default void write(DataOutput out) throws IOException {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " can't be written to a snapshot");
+  }
 }
@@ -0,0 +1,67 @@
+package uk.co.openkappa.bitrules;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how often each matcher, applied on its own, empties the context or
+ * how much of it survives, and orders the matchers so that those which reject
+ * the most are applied first. Counts are only updated on sampled classifications
+ * and are reset after each reordering, so the order follows recent traffic.
+ */
+class MatcherStatistics<Input, MaskType extends Mask<MaskType>> {
+
+  private static final long SCALE = 1_000_000L;
+
+  final Matcher<Input, MaskType>[] matchers;
+  final int sampleInterval;
+  private final int reorderInterval;
+  private final AtomicLongArray emptied;
+  private final AtomicLongArray survivors;
+  private final AtomicLong samples = new AtomicLong();
+
+  MatcherStatistics(Matcher<Input, MaskType>[] matchers, int sampleInterval, int reorderInterval) {
+    this.matchers = Arrays.copyOf(matchers, matchers.length);
+    this.sampleInterval = sampleInterval;
+    this.reorderInterval = reorderInterval;
+    this.emptied = new AtomicLongArray(matchers.length);
+    this.survivors = new AtomicLongArray(matchers.length);
+  }
+
+  void record(int matcher, int cardinality, int total) {
+    if (cardinality == 0) {
+      emptied.incrementAndGet(matcher);
+    } else {
+      survivors.addAndGet(matcher, cardinality * SCALE / total);
+    }
+  }
+
+  /**
+   * @return true if enough samples have been taken since the last reordering
+   */
+  boolean sampled() {
+    return samples.incrementAndGet() % reorderInterval == 0;
+  }
+
+  Matcher<Input, MaskType>[] reorder() {
+    long[] emptiedCounts = new long[matchers.length];
+    long[] survivorCounts = new long[matchers.length];
+    for (int i = 0; i < matchers.length; ++i) {
+      emptiedCounts[i] = emptied.getAndSet(i, 0);
+      survivorCounts[i] = survivors.getAndSet(i, 0);
+    }
+    Integer[] order = new Integer[matchers.length];
+    for (int i = 0; i < order.length; ++i) {
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.<Integer>comparingLong(i -> -emptiedCounts[i])
+                                 .thenComparingLong(i -> survivorCounts[i]));
+    Matcher<Input, MaskType>[] reordered = Arrays.copyOf(matchers, matchers.length);
+    for (int i = 0; i < order.length; ++i) {
+      reordered[i] = matchers[order[i]];
+    }
+    return reordered;
+  }
+}
@@ -0,0 +1,324 @@
+package uk.co.openkappa.bitrules;
+
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A classifier which rules can be added to and removed from without rebuilding
+ * every rule.
+ *
+ * Rules live in one of two segments: a large base segment, and a small delta
+ * segment holding rules added since the last compaction. Adding a rule only
+ * rebuilds the delta. Removing a rule clears its bit from its segment's mask of
+ * live constraints, sharing the segment's matchers. When the delta grows past
+ * a threshold, or enough of the base has been removed, everything live is
+ * compacted into a new dense base.
+ *
+ * Readers classify against an immutable snapshot published after each change,
+ * so a classification never sees a partially applied change. Writers are serialised.
+ *
+ * Each rule is identified by an int id, which is what
+ * {@link #classificationIndex(Object)} returns. Ids of removed rules are reused.
+ *
+ * @param <Key> the attribute key type
+ * @param <Input> the type of the classified objects
+ * @param <Classification> the type of the classification
+ */
+public class MutableClassifier<Key, Input, Classification> implements Classifier<Input, Classification> {
+
+  private static final int DEFAULT_COMPACTION_THRESHOLD = 1024;
+
+  private final Schema<Key, Input> schema;
+  private final int compactionThreshold;
+  private final Deque<Integer> freeIds = new ArrayDeque<>();
+  private Rule<Key, Classification>[] rules = new Rule[16];
+  private Object[] classifications = new Object[16];
+  private List<Rule<Key, Classification>> base = Collections.emptyList();
+  private List<Rule<Key, Classification>> delta = Collections.emptyList();
+  private int removedFromBase;
+  private int nextId;
+  private long sequence;
+  private volatile Snapshot<Input, Classification> snapshot;
+
+  public MutableClassifier(Schema<Key, Input> schema) {
+    this(schema, DEFAULT_COMPACTION_THRESHOLD);
+  }
+
+  /**
+   * @param schema the schema
+   * @param compactionThreshold how many rules can be added, or removed from the base,
+   *                            before all live rules are compacted
+   */
+  public MutableClassifier(Schema<Key, Input> schema, int compactionThreshold) {
+    this.schema = schema;
+    this.compactionThreshold = compactionThreshold;
+    this.snapshot = new Snapshot<>(null, null, classifications);
+  }
+
+  /**
+   * Adds a rule
+   * @param constraint the rule
+   * @return the id of the rule, which can be used to remove it
+   */
+  public synchronized int add(MatchingConstraint<Key, Classification> constraint) {
+    return addAll(Collections.singletonList(constraint))[0];
+  }
+
+  /**
+   * Adds several rules, publishing them together
+   * @param constraints the rules
+   * @return the ids of the rules, in the same order as the rules
+   */
+  public synchronized int[] addAll(List<MatchingConstraint<Key, Classification>> constraints) {
+    int[] ids = new int[constraints.size()];
+    List<Rule<Key, Classification>> grown = new ArrayList<>(delta.size() + constraints.size());
+    grown.addAll(delta);
+    for (int i = 0; i < ids.length; ++i) {
+      Rule<Key, Classification> rule = register(constraints.get(i));
+      grown.add(rule);
+      ids[i] = rule.id;
+    }
+    grown.sort(Rule::compareTo);
+    delta = grown;
+    if (delta.size() > compactionThreshold) {
+      compact();
+    } else {
+      publish(snapshot.base, compile(delta));
+    }
+    return ids;
+  }
+
+  private Rule<Key, Classification> register(MatchingConstraint<Key, Classification> constraint) {
+    boolean reused = !freeIds.isEmpty();
+    int id = reused ? freeIds.pop() : nextId++;
+    if (id >= rules.length) {
+      rules = Arrays.copyOf(rules, rules.length * 2);
+    }
+    if (reused || id >= classifications.length) {
+      // copy rather than overwrite, so readers of older snapshots never see a reused id's new classification
+      classifications = Arrays.copyOf(classifications, rules.length);
+    }
+    classifications[id] = constraint.getClassification();
+    return rules[id] = new Rule<>(id, sequence++, constraint);
+  }
+
+  /**
+   * Removes a rule
+   * @param id the id returned when the rule was added
+   * @return true if the rule was present
+   */
+  public synchronized boolean remove(int id) {
+    Rule<Key, Classification> rule = id >= 0 && id < rules.length ? rules[id] : null;
+    if (null == rule) {
+      return false;
+    }
+    rules[id] = null;
+    freeIds.push(id);
+    Snapshot<Input, Classification> current = snapshot;
+    if (rule.inBase) {
+      ++removedFromBase;
+      if (removedFromBase > compactionThreshold && removedFromBase * 2 > base.size()) {
+        compact();
+      } else {
+        publish(current.base.without(rule.position), current.delta);
+      }
+    } else {
+      List<Rule<Key, Classification>> shrunk = new ArrayList<>(delta);
+      shrunk.remove(rule);
+      delta = shrunk;
+      publish(current.base, current.delta.without(rule.position));
+    }
+    return true;
+  }
+
+  /**
+   * Rebuilds every live rule into a single dense segment.
+   */
+  public synchronized void compact() {
+    List<Rule<Key, Classification>> live = new ArrayList<>(base.size() - removedFromBase + delta.size());
+    for (Rule<Key, Classification> rule : base) {
+      if (rules[rule.id] == rule) {
+        live.add(rule);
+      }
+    }
+    live.addAll(delta);
+    live.sort(Rule::compareTo);
+    for (Rule<Key, Classification> rule : live) {
+      rule.inBase = true;
+    }
+    base = live;
+    delta = Collections.emptyList();
+    removedFromBase = 0;
+    publish(compile(base), null);
+  }
+
+  /**
+   * @return the number of live rules
+   */
+  public synchronized int size() {
+    return base.size() - removedFromBase + delta.size();
+  }
+
+  @Override
+  public Stream<Classification> classifications(Input value) {
+    return classifications(value, new ArrayList<>()).stream();
+  }
+
+  @Override
+  public Optional<Classification> classification(Input value) {
+    return Optional.ofNullable(classificationOrElse(value, null));
+  }
+
+  @Override
+  public int classificationIndex(Input value) {
+    return snapshot.classificationIndex(value);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Classification classificationAt(int id) {
+    return (Classification) snapshot.classifications[id];
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Classification classificationOrElse(Input value, Classification defaultValue) {
+    Snapshot<Input, Classification> current = snapshot;
+    int id = current.classificationIndex(value);
+    return id < 0 ? defaultValue : (Classification) current.classifications[id];
+  }
+
+  @Override
+  public void forEachClassificationIndex(Input value, IntConsumer consumer) {
+    snapshot.forEachClassificationIndex(value, consumer);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <Target extends Collection<? super Classification>> Target classifications(Input value, Target target) {
+    Snapshot<Input, Classification> current = snapshot;
+    current.forEachClassificationIndex(value, id -> target.add((Classification) current.classifications[id]));
+    return target;
+  }
+
+  private Segment<Input, Classification> compile(List<Rule<Key, Classification>> segment) {
+    if (segment.isEmpty()) {
+      return null;
+    }
+    List<MatchingConstraint<Key, Classification>> constraints = new ArrayList<>(segment.size());
+    int[] ids = new int[segment.size()];
+    int[] orders = new int[segment.size()];
+    long[] sequences = new long[segment.size()];
+    for (int i = 0; i < segment.size(); ++i) {
+      Rule<Key, Classification> rule = segment.get(i);
+      rule.position = i;
+      constraints.add(rule.constraint);
+      ids[i] = rule.id;
+      orders[i] = rule.order;
+      sequences[i] = rule.sequence;
+    }
+    return new Segment<>(ImmutableClassifier.<Key, Input, Classification>builder(schema).compile(constraints),
+            ids, orders, sequences);
+  }
+
+  private void publish(Segment<Input, Classification> base, Segment<Input, Classification> delta) {
+    snapshot = new Snapshot<>(base, delta, classifications);
+  }
+
+  private static final class Rule<Key, Classification> implements Comparable<Rule<Key, Classification>> {
+    private final int id;
+    private final long sequence;
+    private final int order;
+    private final MatchingConstraint<Key, Classification> constraint;
+    private boolean inBase;
+    private int position;
+
+    private Rule(int id, long sequence, MatchingConstraint<Key, Classification> constraint) {
+      this.id = id;
+      this.sequence = sequence;
+      this.order = ImmutableClassifier.ClassifierBuilder.order(constraint.getPriority());
+      this.constraint = constraint;
+    }
+
+    @Override
+    public int compareTo(Rule<Key, Classification> other) {
+      int cmp = Integer.compare(order, other.order);
+      return cmp != 0 ? cmp : Long.compare(sequence, other.sequence);
+    }
+  }
+
+  private static final class Segment<Input, Classification> {
+    private final MaskedClassifier<?, Input, Classification> classifier;
+    private final int[] ids;
+    private final int[] orders;
+    private final long[] sequences;
+
+    private Segment(MaskedClassifier<?, Input, Classification> classifier, int[] ids, int[] orders, long[] sequences) {
+      this.classifier = classifier;
+      this.ids = ids;
+      this.orders = orders;
+      this.sequences = sequences;
+    }
+
+    Segment<Input, Classification> without(int position) {
+      return new Segment<>(classifier.without(position), ids, orders, sequences);
+    }
+
+    boolean precedes(int position, Segment<Input, Classification> other, int otherPosition) {
+      int cmp = Integer.compare(orders[position], other.orders[otherPosition]);
+      return cmp != 0 ? cmp < 0 : sequences[position] < other.sequences[otherPosition];
+    }
+  }
+
+  private static final class Snapshot<Input, Classification> {
+    private final Segment<Input, Classification> base;
+    private final Segment<Input, Classification> delta;
+    private final Object[] classifications;
+
+    private Snapshot(Segment<Input, Classification> base, Segment<Input, Classification> delta, Object[] classifications) {
+      this.base = base;
+      this.delta = delta;
+      this.classifications = classifications;
+    }
+
+    int classificationIndex(Input value) {
+      int best = null == base ? -1 : base.classifier.classificationIndex(value);
+      int candidate = null == delta ? -1 : delta.classifier.classificationIndex(value);
+      if (candidate >= 0 && (best < 0 || delta.precedes(candidate, base, best))) {
+        return delta.ids[candidate];
+      }
+      return best < 0 ? -1 : base.ids[best];
+    }
+
+    void forEachClassificationIndex(Input value, IntConsumer consumer) {
+      if (null == delta) {
+        if (null != base) {
+          base.classifier.forEachClassificationIndex(value, position -> consumer.accept(base.ids[position]));
+        }
+        return;
+      }
+      if (null == base) {
+        delta.classifier.forEachClassificationIndex(value, position -> consumer.accept(delta.ids[position]));
+        return;
+      }
+      // the delta is small, so materialise its matches and merge them into the base's in priority order
+      IntStream.Builder matches = IntStream.builder();
+      delta.classifier.forEachClassificationIndex(value, matches::add);
+      int[] fromDelta = matches.build().toArray();
+      int[] next = {0};
+      base.classifier.forEachClassificationIndex(value, position -> {
+        while (next[0] < fromDelta.length && delta.precedes(fromDelta[next[0]], base, position)) {
+          consumer.accept(delta.ids[fromDelta[next[0]++]]);
+        }
+        consumer.accept(base.ids[position]);
+      });
+      while (next[0] < fromDelta.length) {
+        consumer.accept(delta.ids[fromDelta[next[0]++]]);
+      }
+    }
+  }
+}
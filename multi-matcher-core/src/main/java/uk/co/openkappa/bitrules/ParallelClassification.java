@@ -0,0 +1,62 @@
+package uk.co.openkappa.bitrules;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a sized source into chunks and classifies each chunk as a batch,
+ * writing the results into the slice of the output array corresponding to
+ * the chunk's position in the source, so results are in input order.
+ *
+ * Scratch masks are per-thread in the classifier, so each worker reuses its
+ * own masks across all the chunks it processes.
+ */
+class ParallelClassification<Input> extends RecursiveAction {
+
+  private static final long serialVersionUID = 1L;
+
+  private final Classifier<Input, ?> classifier;
+  private final Spliterator<Input> source;
+  private final int[] indices;
+  private final int offset;
+  private final int chunkSize;
+
+  ParallelClassification(Classifier<Input, ?> classifier,
+                         Spliterator<Input> source,
+                         int[] indices,
+                         int offset,
+                         int chunkSize) {
+    this.classifier = classifier;
+    this.source = source;
+    this.indices = indices;
+    this.offset = offset;
+    this.chunkSize = chunkSize;
+  }
+
+  @Override
+  protected void compute() {
+    Spliterator<Input> suffix = source;
+    int position = offset;
+    List<ParallelClassification<Input>> forked = new ArrayList<>();
+    Spliterator<Input> prefix;
+    while (suffix.estimateSize() > chunkSize && null != (prefix = suffix.trySplit())) {
+      ParallelClassification<Input> task = new ParallelClassification<>(classifier, prefix, indices, position, chunkSize);
+      position += (int) prefix.getExactSizeIfKnown();
+      task.fork();
+      forked.add(task);
+    }
+    classify(suffix, position);
+    for (int i = forked.size() - 1; i >= 0; --i) {
+      forked.get(i).join();
+    }
+  }
+
+  private void classify(Spliterator<Input> chunk, int position) {
+    List<Input> batch = new ArrayList<>((int) chunk.getExactSizeIfKnown());
+    chunk.forEachRemaining(batch::add);
+    int[] result = classifier.classifyAll(batch);
+    System.arraycopy(result, 0, indices, position, result.length);
+  }
+}
@@ -0,0 +1,126 @@
+package uk.co.openkappa.bitrules;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Splits the rules by the value they require of a single attribute, and classifies
+ * each input only against the rules for its value, plus the rules which don't
+ * constrain the attribute to a single value. The two partitions are built as independent
+ * classifiers, so their masks are only as large as the partitions themselves, and the
+ * results are merged by priority.
+ *
+ * @param <Input> the type of the classified objects
+ * @param <Classification> the type of the classification
+ */
+class PartitionedClassifier<Input, Classification> implements Classifier<Input, Classification> {
+
+  private static final int[] NONE = new int[0];
+
+  private final Function<Input, Object> extractor;
+  private final Map<Object, Partition<Input, Classification>> partitions;
+  private final Partition<Input, Classification> fallback;
+  private final Classification[] classifications;
+
+  PartitionedClassifier(Function<Input, Object> extractor,
+                        Map<Object, Partition<Input, Classification>> partitions,
+                        Partition<Input, Classification> fallback,
+                        Classification[] classifications) {
+    this.extractor = extractor;
+    this.partitions = partitions;
+    this.fallback = fallback;
+    this.classifications = classifications;
+  }
+
+  @Override
+  public Stream<Classification> classifications(Input value) {
+    return Arrays.stream(matches(value)).mapToObj(i -> classifications[i]);
+  }
+
+  @Override
+  public Optional<Classification> classification(Input value) {
+    int index = classificationIndex(value);
+    return index < 0 ? Optional.empty() : Optional.of(classifications[index]);
+  }
+
+  @Override
+  public int classificationIndex(Input value) {
+    Partition<Input, Classification> partition = partitions.get(extractor.apply(value));
+    int best = null == partition ? -1 : partition.best(value);
+    int fallbackBest = null == fallback ? -1 : fallback.best(value);
+    // indices are in priority order, so the lower index wins
+    return best < 0 ? fallbackBest : fallbackBest < 0 ? best : Math.min(best, fallbackBest);
+  }
+
+  @Override
+  public Classification classificationAt(int index) {
+    return classifications[index];
+  }
+
+  @Override
+  public Classification classificationOrElse(Input value, Classification defaultValue) {
+    int index = classificationIndex(value);
+    return index < 0 ? defaultValue : classifications[index];
+  }
+
+  @Override
+  public void forEachClassificationIndex(Input value, IntConsumer consumer) {
+    for (int index : matches(value)) {
+      consumer.accept(index);
+    }
+  }
+
+  private int[] matches(Input value) {
+    Partition<Input, Classification> partition = partitions.get(extractor.apply(value));
+    int[] left = null == partition ? NONE : partition.all(value);
+    int[] right = null == fallback ? NONE : fallback.all(value);
+    if (right.length == 0) {
+      return left;
+    }
+    if (left.length == 0) {
+      return right;
+    }
+    int[] merged = new int[left.length + right.length];
+    int i = 0, j = 0, k = 0;
+    while (i < left.length && j < right.length) {
+      merged[k++] = left[i] < right[j] ? left[i++] : right[j++];
+    }
+    while (i < left.length) {
+      merged[k++] = left[i++];
+    }
+    while (j < right.length) {
+      merged[k++] = right[j++];
+    }
+    return merged;
+  }
+
+  /**
+   * A classifier over a subset of the rules, and the index of each of its rules
+   * in the whole rule set.
+   */
+  static final class Partition<Input, Classification> {
+    private final Classifier<Input, Classification> classifier;
+    private final int[] indices;
+
+    Partition(Classifier<Input, Classification> classifier, int[] indices) {
+      this.classifier = classifier;
+      this.indices = indices;
+    }
+
+    int best(Input value) {
+      int index = classifier.classificationIndex(value);
+      return index < 0 ? -1 : indices[index];
+    }
+
+    int[] all(Input value) {
+      IntStream.Builder matches = IntStream.builder();
+      classifier.forEachClassificationIndex(value, index -> matches.add(indices[index]));
+      return matches.build().toArray();
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package uk.co.openkappa.bitrules;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Counts how often each constraint matches, and how often it is the best match, by position.
+ * Like {@link java.util.concurrent.atomic.LongAdder}, counts go to one of a fixed number of
+ * stripes, between two and four times as many as there are cores, handed out to threads in turn, so few threads
+ * share a stripe and counting rarely contends. The stripes outlive the threads counting into them,
+ * so there is a bounded amount of memory however many threads come and go. The stripes are summed
+ * when the counts are read. Resetting doesn't touch the stripes, which may be being written to,
+ * but records the current counts as a baseline to subtract from later reads.
+ */
+public final class RuleHits {
+
+  private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+
+  private final int size;
+  private final AtomicReferenceArray<Stripe> stripes = new AtomicReferenceArray<>(STRIPES);
+  private final AtomicInteger next = new AtomicInteger();
+  private long[] matchesBaseline;
+  private long[] bestBaseline;
+
+  RuleHits(int size) {
+    this.size = size;
+    this.matchesBaseline = new long[size];
+    this.bestBaseline = new long[size];
+  }
+
+  /**
+   * @return the next stripe to count into, which may be shared with other threads
+   */
+  Stripe stripe() {
+    int index = next.getAndIncrement() & (STRIPES - 1);
+    Stripe stripe = stripes.get(index);
+    if (null == stripe) {
+      stripes.compareAndSet(index, null, new Stripe(size));
+      stripe = stripes.get(index);
+    }
+    return stripe;
+  }
+
+  /**
+   * @return the number of stripes allocated so far, which never exceeds a small multiple of the core count
+   */
+  int stripes() {
+    int count = 0;
+    for (int i = 0; i < STRIPES; ++i) {
+      if (null != stripes.get(i)) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return the number of positions counted
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return how many times the constraint at each position has matched since the last reset
+   */
+  public synchronized long[] matches() {
+    return subtract(sum(true), matchesBaseline);
+  }
+
+  /**
+   * @return how many times the constraint at each position has been the best match since the last reset
+   */
+  public synchronized long[] best() {
+    return subtract(sum(false), bestBaseline);
+  }
+
+  /**
+   * Zeroes the counts. Classifications in progress on other threads may be counted either side of the reset.
+   */
+  public synchronized void reset() {
+    matchesBaseline = sum(true);
+    bestBaseline = sum(false);
+  }
+
+  private long[] sum(boolean matches) {
+    long[] sum = new long[size];
+    for (int s = 0; s < STRIPES; ++s) {
+      Stripe stripe = stripes.get(s);
+      if (null == stripe) {
+        continue;
+      }
+      AtomicLongArray counts = matches ? stripe.matches : stripe.best;
+      for (int i = 0; i < size; ++i) {
+        sum[i] += counts.get(i);
+      }
+    }
+    return sum;
+  }
+
+  private static long[] subtract(long[] counts, long[] baseline) {
+    for (int i = 0; i < counts.length; ++i) {
+      counts[i] -= baseline[i];
+    }
+    return counts;
+  }
+
+  static final class Stripe implements IntConsumer {
+    private final AtomicLongArray matches;
+    private final AtomicLongArray best;
+
+    private Stripe(int size) {
+      this.matches = new AtomicLongArray(size);
+      this.best = new AtomicLongArray(size);
+    }
+
+    <MaskType extends Mask<MaskType>> void record(MaskType context) {
+      if (!context.isEmpty()) {
+        int first = context.first();
+        best.getAndIncrement(first);
+        context.forEach(this);
+      }
+    }
+
+    @Override
+    public void accept(int position) {
+      matches.getAndIncrement(position);
+    }
+  }
+}
@@ -3,15 +3,27 @@ package uk.co.openkappa.bitrules;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface RuleSet<Key, Classification> {
 
   List<MatchingConstraint<Key, Classification>> constraints() throws IOException;
 
+  /**
+   * Streams the rules, which should be closed once consumed. Every stream must produce
+   * the same rules in the same order. Rule sets too large to hold in memory should
+   * implement {@link StreamingRuleSet} and read the rules lazily.
+   * @return the rules
+   * @throws IOException if the rules can't be read
+   */
+  default Stream<MatchingConstraint<Key, Classification>> stream() throws IOException {
+    return constraints().stream();
+  }
+
   default Optional<MatchingConstraint<Key, Classification>> specification(String ruleId) throws IOException {
-    return constraints().stream()
-            .filter(rule -> rule.getId().equals(ruleId))
-            .findFirst();
+    try (Stream<MatchingConstraint<Key, Classification>> rules = stream()) {
+      return rules.filter(rule -> rule.getId().equals(ruleId)).findFirst();
+    }
   }
 
 }
@@ -0,0 +1,49 @@
+package uk.co.openkappa.bitrules;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A rule set which reads its rules lazily, so that building a classifier with
+ * {@link ImmutableClassifier.ClassifierBuilder#build(RuleSet)} doesn't need every
+ * rule in memory at once. Rules are looked up by id through an index rather than
+ * by scanning the whole rule set.
+ *
+ * @param <Key> the attribute key type
+ * @param <Classification> the type of the classification
+ */
+public interface StreamingRuleSet<Key, Classification> extends RuleSet<Key, Classification> {
+
+  /**
+   * Opens a new pass over the rules. Every pass must produce the same rules in the same order,
+   * and the stream must be closed once consumed, to release the underlying resource.
+   * @return the rules
+   * @throws IOException if the rules can't be read
+   */
+  @Override
+  Stream<MatchingConstraint<Key, Classification>> stream() throws IOException;
+
+  /**
+   * Finds a rule by id without scanning the rules
+   * @param ruleId the rule id
+   * @return the rule, if there is one with the id
+   * @throws IOException if the rule can't be read
+   */
+  @Override
+  Optional<MatchingConstraint<Key, Classification>> specification(String ruleId) throws IOException;
+
+  /**
+   * Reads every rule into memory, which defeats the purpose of streaming
+   * @return all the rules
+   * @throws IOException if the rules can't be read
+   */
+  @Override
+  default List<MatchingConstraint<Key, Classification>> constraints() throws IOException {
+    try (Stream<MatchingConstraint<Key, Classification>> rules = stream()) {
+      return rules.collect(Collectors.toList());
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package uk.co.openkappa.bitrules.codegen;
+
+import uk.co.openkappa.bitrules.Mask;
+
+/**
+ * Applies a fixed sequence of matchers, stopping as soon as no constraint is satisfied.
+ * @param <Input> the type of the classified objects
+ * @param <MaskType> the type of mask
+ */
+public interface MatcherSequence<Input, MaskType extends Mask<MaskType>> {
+
+  /**
+   * Applies each matcher in turn to the context.
+   * @param value the value to match
+   * @param context the identities of the constraints satisfied before the match
+   * @param scratch a mask from the same factory as the context, overwritten by the match
+   * @return the identities of the constraints still satisfied
+   */
+  MaskType match(Input value, MaskType context, MaskType scratch);
+}
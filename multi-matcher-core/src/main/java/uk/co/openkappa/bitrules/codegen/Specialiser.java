@@ -0,0 +1,142 @@
+package uk.co.openkappa.bitrules.codegen;
+
+import uk.co.openkappa.bitrules.Mask;
+import uk.co.openkappa.bitrules.Matcher;
+
+import java.io.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Generates a class per matcher sequence which applies the matchers in straight-line code.
+ * When every classifier shares the same loop over a matcher array, the call to
+ * {@link Matcher#match} is megamorphic as soon as a few types of matcher are in use,
+ * and the JIT can't inline any of them. Each generated class has its own call sites,
+ * and only ever sees one matcher at each, so every call can be inlined.
+ *
+ * The generated classes are copies of a template class with a new name, each defined
+ * in its own class loader so it can be unloaded along with the classifier.
+ */
+public final class Specialiser {
+
+  private static final String TEMPLATE = UnrolledSequence.class.getName().replace('.', '/');
+  private static final byte[] TEMPLATE_BYTES = load();
+  private static final AtomicLong GENERATED = new AtomicLong();
+
+  private Specialiser() {
+  }
+
+  /**
+   * Generates a sequence specialised to the matchers.
+   * @param matchers the matchers, in the order to apply them
+   * @param <Input> the type of the classified objects
+   * @param <MaskType> the type of mask
+   * @return a sequence which applies the matchers in order
+   */
+  @SuppressWarnings("unchecked")
+  public static <Input, MaskType extends Mask<MaskType>>
+  MatcherSequence<Input, MaskType> specialise(Matcher<Input, MaskType>[] matchers) {
+    String name = TEMPLATE + "$" + GENERATED.incrementAndGet();
+    byte[] bytes = rename(TEMPLATE_BYTES, TEMPLATE, name);
+    Class<?> type = new SequenceLoader(Specialiser.class.getClassLoader()).define(name.replace('/', '.'), bytes);
+    try {
+      MethodHandle constructor = MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+              .findConstructor(type, methodType(void.class, Matcher[].class));
+      return (MatcherSequence<Input, MaskType>) constructor.invoke(matchers.clone());
+    } catch (Throwable e) {
+      throw new IllegalStateException("can't instantiate " + name, e);
+    }
+  }
+
+  private static byte[] load() {
+    try (InputStream in = Specialiser.class.getResourceAsStream("/" + TEMPLATE + ".class")) {
+      if (null == in) {
+        throw new IllegalStateException("can't find " + TEMPLATE);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Copies a class file, replacing the class name wherever it appears in a UTF-8
+   * constant, which covers the class's own name and any descriptors mentioning it.
+   */
+  static byte[] rename(byte[] classFile, String from, String to) {
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream(classFile.length + 64);
+      DataOutputStream out = new DataOutputStream(buffer);
+      out.writeInt(in.readInt()); // magic
+      out.writeShort(in.readUnsignedShort()); // minor version
+      out.writeShort(in.readUnsignedShort()); // major version
+      int constants = in.readUnsignedShort();
+      out.writeShort(constants);
+      for (int i = 1; i < constants; ++i) {
+        int tag = in.readUnsignedByte();
+        out.writeByte(tag);
+        switch (tag) {
+          case 1: // Utf8
+            String value = in.readUTF();
+            out.writeUTF(value.contains(from) ? value.replace(from, to) : value);
+            break;
+          case 7: // Class
+          case 8: // String
+          case 16: // MethodType
+          case 19: // Module
+          case 20: // Package
+            out.writeShort(in.readUnsignedShort());
+            break;
+          case 15: // MethodHandle
+            out.writeByte(in.readUnsignedByte());
+            out.writeShort(in.readUnsignedShort());
+            break;
+          case 3: // Integer
+          case 4: // Float
+          case 9: // Fieldref
+          case 10: // Methodref
+          case 11: // InterfaceMethodref
+          case 12: // NameAndType
+          case 17: // Dynamic
+          case 18: // InvokeDynamic
+            out.writeInt(in.readInt());
+            break;
+          case 5: // Long
+          case 6: // Double
+            out.writeLong(in.readLong());
+            ++i; // takes two slots
+            break;
+          default:
+            throw new IllegalStateException("unknown constant pool tag " + tag);
+        }
+      }
+      byte[] remainder = new byte[in.available()];
+      in.readFully(remainder);
+      out.write(remainder);
+      return buffer.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static final class SequenceLoader extends ClassLoader {
+
+    private SequenceLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    Class<?> define(String name, byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
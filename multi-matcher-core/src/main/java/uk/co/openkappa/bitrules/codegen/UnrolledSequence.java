@@ -0,0 +1,80 @@
+package uk.co.openkappa.bitrules.codegen;
+
+import uk.co.openkappa.bitrules.Mask;
+import uk.co.openkappa.bitrules.Matcher;
+
+/**
+ * The template for generated sequences: {@link Specialiser} defines a renamed copy of this
+ * class for every classifier, so each call site below only ever sees one matcher. Must not
+ * use lambdas or nested classes, which would refer to this class by name.
+ */
+final class UnrolledSequence<Input, MaskType extends Mask<MaskType>> implements MatcherSequence<Input, MaskType> {
+
+  static final int UNROLLED = 8;
+
+  private final int count;
+  private final Matcher<Input, MaskType> m0;
+  private final Matcher<Input, MaskType> m1;
+  private final Matcher<Input, MaskType> m2;
+  private final Matcher<Input, MaskType> m3;
+  private final Matcher<Input, MaskType> m4;
+  private final Matcher<Input, MaskType> m5;
+  private final Matcher<Input, MaskType> m6;
+  private final Matcher<Input, MaskType> m7;
+  private final Matcher<Input, MaskType>[] rest;
+
+  public UnrolledSequence(Matcher<Input, MaskType>[] matchers) {
+    this.count = matchers.length;
+    this.m0 = count > 0 ? matchers[0] : null;
+    this.m1 = count > 1 ? matchers[1] : null;
+    this.m2 = count > 2 ? matchers[2] : null;
+    this.m3 = count > 3 ? matchers[3] : null;
+    this.m4 = count > 4 ? matchers[4] : null;
+    this.m5 = count > 5 ? matchers[5] : null;
+    this.m6 = count > 6 ? matchers[6] : null;
+    this.m7 = count > 7 ? matchers[7] : null;
+    Matcher<Input, MaskType>[] rest = (Matcher<Input, MaskType>[]) new Matcher[Math.max(0, count - UNROLLED)];
+    System.arraycopy(matchers, rest.length == 0 ? 0 : UNROLLED, rest, 0, rest.length);
+    this.rest = rest;
+  }
+
+  @Override
+  public MaskType match(Input value, MaskType context, MaskType scratch) {
+    if (count == 0) {
+      return context;
+    }
+    context = m0.match(value, context, scratch);
+    if (count == 1 || context.isEmpty()) {
+      return context;
+    }
+    context = m1.match(value, context, scratch);
+    if (count == 2 || context.isEmpty()) {
+      return context;
+    }
+    context = m2.match(value, context, scratch);
+    if (count == 3 || context.isEmpty()) {
+      return context;
+    }
+    context = m3.match(value, context, scratch);
+    if (count == 4 || context.isEmpty()) {
+      return context;
+    }
+    context = m4.match(value, context, scratch);
+    if (count == 5 || context.isEmpty()) {
+      return context;
+    }
+    context = m5.match(value, context, scratch);
+    if (count == 6 || context.isEmpty()) {
+      return context;
+    }
+    context = m6.match(value, context, scratch);
+    if (count == 7 || context.isEmpty()) {
+      return context;
+    }
+    context = m7.match(value, context, scratch);
+    for (int i = 0; i < rest.length && !context.isEmpty(); ++i) {
+      context = rest[i].match(value, context, scratch);
+    }
+    return context;
+  }
+}
@@ -4,7 +4,12 @@ import org.roaringbitmap.IntIterator;
 import org.roaringbitmap.RoaringBitmap;
 import uk.co.openkappa.bitrules.Mask;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.Objects;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 
 public class HugeMask implements Mask<HugeMask> {
@@ -68,7 +73,8 @@ public class HugeMask implements Mask<HugeMask> {
   @Override
   public HugeMask inPlaceAnd(HugeMask other) {
     if (other.isEmpty()) {
-      return FACTORY.empty();
+      bitmap.clear();
+      return this;
     }
     bitmap.and(other.bitmap);
     return this;
@@ -83,6 +89,13 @@ public class HugeMask implements Mask<HugeMask> {
     return this;
   }
 
+  @Override
+  public HugeMask resetTo(HugeMask other) {
+    bitmap.clear();
+    bitmap.or(other.bitmap);
+    return this;
+  }
+
   @Override
   public IntStream stream() {
     IntIterator it = bitmap.getIntIterator();
@@ -90,6 +103,11 @@ public class HugeMask implements Mask<HugeMask> {
             .map(i -> it.next());
   }
 
+  @Override
+  public void forEach(IntConsumer consumer) {
+    bitmap.forEach((org.roaringbitmap.IntConsumer) consumer::accept);
+  }
+
   @Override
   public int first() {
     return bitmap.first();
@@ -110,6 +128,28 @@ public class HugeMask implements Mask<HugeMask> {
     return bitmap.isEmpty();
   }
 
+  @Override
+  public boolean isSubsetOf(HugeMask other) {
+    return other.bitmap.contains(bitmap);
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    bitmap.serialize(out);
+  }
+
+  static RoaringBitmap deserialize(ByteBuffer in) {
+    RoaringBitmap bitmap = new RoaringBitmap();
+    try {
+      // roaring sets its own byte order, so give it a view of the buffer
+      bitmap.deserialize(in.slice());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    in.position(in.position() + bitmap.serializedSizeInBytes());
+    return bitmap;
+  }
+
   @Override
   public int cardinality() {
     return bitmap.getCardinality();
@@ -148,6 +188,11 @@ public class HugeMask implements Mask<HugeMask> {
       return new HugeMask(RoaringBitmap.bitmapOf(values));
     }
 
+    @Override
+    public HugeMask read(ByteBuffer in) {
+      return new HugeMask(deserialize(in));
+    }
+
     @Override
     public HugeMask emptySingleton() {
       return EMPTY;
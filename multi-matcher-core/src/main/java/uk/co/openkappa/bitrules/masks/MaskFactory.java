@@ -2,6 +2,8 @@ package uk.co.openkappa.bitrules.masks;
 
 import uk.co.openkappa.bitrules.Mask;
 
+import java.nio.ByteBuffer;
+
 public interface MaskFactory<MaskType extends Mask<MaskType>> {
   /**
    * Create an empty mask
@@ -28,4 +30,11 @@ public interface MaskFactory<MaskType extends Mask<MaskType>> {
    * @return an empty mask
    */
   MaskType emptySingleton();
+
+  /**
+   * Reads a mask written by {@link Mask#write}, advancing the buffer past it
+   * @param in the buffer
+   * @return the mask
+   */
+  MaskType read(ByteBuffer in);
 }
@@ -0,0 +1,267 @@
+package uk.co.openkappa.bitrules.masks;
+
+import uk.co.openkappa.bitrules.Mask;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * A fixed capacity mask backed by a <code>long[]</code>, for rule sets
+ * too large for a {@link TinyMask} but small enough that a flat bitset
+ * beats a roaring container. All masks made by the same factory have
+ * the same number of words, so the logical operations are simple loops.
+ */
+public class MediumMask implements Mask<MediumMask> {
+
+  public static final int MAX_CAPACITY = 1 << 12;
+
+  /**
+   * Gets a factory for masks with capacity for <code>max</code> rules
+   * @param max the maximum number of rules, must not exceed {@link #MAX_CAPACITY}
+   * @return a mask factory
+   */
+  public static MaskFactory<MediumMask> factory(int max) {
+    if (max > MAX_CAPACITY) {
+      throw new IllegalArgumentException(max + " exceeds capacity " + MAX_CAPACITY);
+    }
+    return new Factory(Math.max(1, (max + 63) >>> 6));
+  }
+
+  private final long[] words;
+
+  private MediumMask(long[] words) {
+    this.words = words;
+  }
+
+  @Override
+  public void add(int id) {
+    words[id >>> 6] |= 1L << id;
+  }
+
+  @Override
+  public void remove(int id) {
+    words[id >>> 6] &= ~(1L << id);
+  }
+
+  @Override
+  public MediumMask and(MediumMask other) {
+    return clone().inPlaceAnd(other);
+  }
+
+  @Override
+  public MediumMask andNot(MediumMask other) {
+    return clone().inPlaceAndNot(other);
+  }
+
+  @Override
+  public MediumMask inPlaceAndNot(MediumMask other) {
+    long[] those = other.words;
+    int length = Math.min(words.length, those.length);
+    for (int i = 0; i < length; ++i) {
+      words[i] &= ~those[i];
+    }
+    return this;
+  }
+
+  @Override
+  public MediumMask or(MediumMask other) {
+    return clone().inPlaceOr(other);
+  }
+
+  @Override
+  public MediumMask orNot(MediumMask other, int max) {
+    long[] result = Arrays.copyOf(words, words.length);
+    long[] those = other.words;
+    int limit = Math.min(max >>> 6, result.length);
+    for (int i = 0; i < limit; ++i) {
+      result[i] |= ~those[i];
+    }
+    if (limit < result.length && (max & 63) != 0) {
+      result[limit] |= ~those[limit] & ((1L << max) - 1);
+    }
+    return new MediumMask(result);
+  }
+
+  @Override
+  public MediumMask inPlaceAnd(MediumMask other) {
+    long[] those = other.words;
+    int length = Math.min(words.length, those.length);
+    for (int i = 0; i < length; ++i) {
+      words[i] &= those[i];
+    }
+    return this;
+  }
+
+  @Override
+  public MediumMask inPlaceOr(MediumMask other) {
+    long[] those = other.words;
+    int length = Math.min(words.length, those.length);
+    for (int i = 0; i < length; ++i) {
+      words[i] |= those[i];
+    }
+    return this;
+  }
+
+  @Override
+  public MediumMask resetTo(MediumMask other) {
+    System.arraycopy(other.words, 0, words, 0, Math.min(words.length, other.words.length));
+    return this;
+  }
+
+  @Override
+  public IntStream stream() {
+    return IntStream.range(0, words.length)
+            .flatMap(i -> LongStream.iterate(words[i], word -> word & (word - 1))
+                                    .limit(Long.bitCount(words[i]))
+                                    .mapToInt(word -> (i << 6) + Long.numberOfTrailingZeros(word)));
+  }
+
+  @Override
+  public void forEach(IntConsumer consumer) {
+    for (int i = 0; i < words.length; ++i) {
+      long word = words[i];
+      while (word != 0) {
+        consumer.accept((i << 6) + Long.numberOfTrailingZeros(word));
+        word &= (word - 1);
+      }
+    }
+  }
+
+  @Override
+  public int first() {
+    for (int i = 0; i < words.length; ++i) {
+      if (words[i] != 0) {
+        return (i << 6) + Long.numberOfTrailingZeros(words[i]);
+      }
+    }
+    throw new NoSuchElementException("empty mask");
+  }
+
+  @Override
+  public MediumMask clone() {
+    return new MediumMask(Arrays.copyOf(words, words.length));
+  }
+
+  @Override
+  public void optimise() {
+
+  }
+
+  @Override
+  public boolean isEmpty() {
+    long union = 0L;
+    for (long word : words) {
+      union |= word;
+    }
+    return union == 0L;
+  }
+
+  @Override
+  public boolean isSubsetOf(MediumMask other) {
+    long[] those = other.words;
+    int length = Math.min(words.length, those.length);
+    long outside = 0L;
+    for (int i = 0; i < length; ++i) {
+      outside |= words[i] & ~those[i];
+    }
+    for (int i = length; i < words.length; ++i) {
+      outside |= words[i];
+    }
+    return outside == 0L;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(words.length);
+    for (long word : words) {
+      out.writeLong(word);
+    }
+  }
+
+  @Override
+  public int cardinality() {
+    int cardinality = 0;
+    for (long word : words) {
+      cardinality += Long.bitCount(word);
+    }
+    return cardinality;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("{");
+    stream().forEach(i -> sb.append(i).append(','));
+    if (sb.length() > 1) {
+      sb.setLength(sb.length() - 1);
+    }
+    return sb.append('}').toString();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    MediumMask that = (MediumMask) o;
+    return Arrays.equals(words, that.words);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(words);
+  }
+
+  private static final class Factory implements MaskFactory<MediumMask> {
+    private final int words;
+    private final MediumMask EMPTY;
+
+    private Factory(int words) {
+      this.words = words;
+      this.EMPTY = empty();
+    }
+
+    @Override
+    public MediumMask empty() {
+      return new MediumMask(new long[words]);
+    }
+
+    @Override
+    public MediumMask contiguous(int max) {
+      long[] range = new long[words];
+      int full = Math.min(max >>> 6, words);
+      Arrays.fill(range, 0, full, -1L);
+      if (full < words && (max & 63) != 0) {
+        range[full] = (1L << max) - 1;
+      }
+      return new MediumMask(range);
+    }
+
+    @Override
+    public MediumMask of(int... values) {
+      MediumMask mask = empty();
+      for (int v : values) {
+        mask.add(v);
+      }
+      return mask;
+    }
+
+    @Override
+    public MediumMask read(ByteBuffer in) {
+      long[] read = new long[in.getInt()];
+      in.asLongBuffer().get(read);
+      in.position(in.position() + read.length * Long.BYTES);
+      return new MediumMask(read.length == words ? read : Arrays.copyOf(read, words));
+    }
+
+    @Override
+    public MediumMask emptySingleton() {
+      return EMPTY;
+    }
+  }
+}
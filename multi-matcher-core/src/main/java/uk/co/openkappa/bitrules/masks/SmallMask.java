@@ -3,6 +3,10 @@ package uk.co.openkappa.bitrules.masks;
 import org.roaringbitmap.*;
 import uk.co.openkappa.bitrules.Mask;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 
 
@@ -12,8 +16,15 @@ public class SmallMask implements Mask<SmallMask> {
 
   public static final int MAX_CAPACITY = 1 << 16;
 
+  private static final int ARRAY_CAPACITY = 4096;
+
   private Container container;
 
+  // storage reused by masks which are repeatedly overwritten, allocated on first use
+  private long[] words;
+  private BitmapContainer bitmapBuffer;
+  private ArrayContainer arrayBuffer;
+
   public SmallMask(Container container) {
     this.container = container;
   }
@@ -54,9 +65,20 @@ public class SmallMask implements Mask<SmallMask> {
   @Override
   public SmallMask inPlaceAnd(SmallMask other) {
     if (other.isEmpty()) {
-      return FACTORY.empty();
+      container.clear();
+      return this;
+    }
+    Container that = other.container;
+    if (container == bitmapBuffer && that == other.bitmapBuffer) {
+      this.container = intersectBuffers(other);
+    } else if (container == bitmapBuffer && that instanceof ArrayContainer) {
+      // the intersection is sparse: filter a copy of the array rather than creating a new one
+      this.container = arrayBuffer().ior(that).iand(bitmapBuffer);
+    } else if (container == arrayBuffer && that instanceof RunContainer) {
+      this.container = container.iand(bitmapBuffer().ior(that));
+    } else {
+      this.container = container.iand(that);
     }
-    this.container = container.iand(other.container);
     return this;
   }
 
@@ -81,16 +103,74 @@ public class SmallMask implements Mask<SmallMask> {
     if (other.isEmpty()) {
       return this;
     }
+    if (container == arrayBuffer && !(other.container instanceof ArrayContainer
+            && container.getCardinality() + other.container.getCardinality() <= ARRAY_CAPACITY)) {
+      this.container = bitmapBuffer().ior(container);
+    }
     this.container = container.ior(other.container);
     return this;
   }
 
+  @Override
+  public SmallMask resetTo(SmallMask other) {
+    Container that = other.container;
+    this.container = that instanceof ArrayContainer
+            ? arrayBuffer().ior(that)
+            : bitmapBuffer().ior(that);
+    return this;
+  }
+
+  private Container intersectBuffers(SmallMask other) {
+    long[] those = other.words;
+    int cardinality = 0;
+    for (int i = 0; i < words.length; ++i) {
+      cardinality += Long.bitCount(words[i] & those[i]);
+    }
+    if (cardinality > ARRAY_CAPACITY) {
+      return bitmapBuffer.iand(other.bitmapBuffer);
+    }
+    // roaring would allocate a new array container here
+    Container array = arrayBuffer();
+    for (int i = 0; i < words.length; ++i) {
+      long word = words[i] & those[i];
+      while (word != 0) {
+        array = array.add((short) ((i << 6) + Long.numberOfTrailingZeros(word)));
+        word &= word - 1;
+      }
+    }
+    return array;
+  }
+
+  private BitmapContainer bitmapBuffer() {
+    if (null == bitmapBuffer) {
+      words = new long[MAX_CAPACITY >>> 6];
+      bitmapBuffer = new BitmapContainer(words, 0);
+    } else {
+      bitmapBuffer.clear();
+    }
+    return bitmapBuffer;
+  }
+
+  private ArrayContainer arrayBuffer() {
+    if (null == arrayBuffer) {
+      arrayBuffer = new ArrayContainer(ARRAY_CAPACITY);
+    } else {
+      arrayBuffer.clear();
+    }
+    return arrayBuffer;
+  }
+
   @Override
   public IntStream stream() {
     PeekableShortIterator it = container.getShortIterator();
     return IntStream.range(0, container.getCardinality()).map(i -> it.nextAsInt());
   }
 
+  @Override
+  public void forEach(IntConsumer consumer) {
+    container.forEach((short)0, consumer::accept);
+  }
+
   @Override
   public int first() {
     return container.first();
@@ -111,6 +191,19 @@ public class SmallMask implements Mask<SmallMask> {
     return container.isEmpty();
   }
 
+  @Override
+  public boolean isSubsetOf(SmallMask other) {
+    return other.container.contains(container);
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    RoaringBitmap bitmap = new RoaringBitmap();
+    container.forEach((short) 0, bitmap::add);
+    bitmap.runOptimize();
+    bitmap.serialize(out);
+  }
+
   @Override
   public int cardinality() {
     return container.getCardinality();
@@ -156,6 +249,13 @@ public class SmallMask implements Mask<SmallMask> {
       return mask;
     }
 
+    @Override
+    public SmallMask read(ByteBuffer in) {
+      RoaringBitmap bitmap = HugeMask.deserialize(in);
+      Container container = bitmap.getContainerPointer().getContainer();
+      return null == container ? empty() : new SmallMask(container);
+    }
+
     @Override
     public SmallMask emptySingleton() {
       return EMPTY;
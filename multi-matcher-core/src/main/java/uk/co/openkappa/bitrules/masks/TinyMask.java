@@ -2,8 +2,13 @@ package uk.co.openkappa.bitrules.masks;
 
 import uk.co.openkappa.bitrules.Mask;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 import java.util.stream.LongStream;
 
@@ -64,6 +69,12 @@ public class TinyMask implements Mask<TinyMask> {
     return this;
   }
 
+  @Override
+  public TinyMask resetTo(TinyMask other) {
+    this.mask = other.mask;
+    return this;
+  }
+
   @Override
   public IntStream stream() {
     return LongStream.iterate(mask, mask -> mask & (mask - 1))
@@ -71,6 +82,15 @@ public class TinyMask implements Mask<TinyMask> {
                      .mapToInt(Long::numberOfTrailingZeros);
   }
 
+  @Override
+  public void forEach(IntConsumer consumer) {
+    long word = mask;
+    while (word != 0) {
+      consumer.accept(Long.numberOfTrailingZeros(word));
+      word &= (word - 1);
+    }
+  }
+
   @Override
   public int first() {
     if (!isEmpty()) {
@@ -94,6 +114,16 @@ public class TinyMask implements Mask<TinyMask> {
     return mask == 0L;
   }
 
+  @Override
+  public boolean isSubsetOf(TinyMask other) {
+    return (mask & ~other.mask) == 0L;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeLong(mask);
+  }
+
   @Override
   public int cardinality() {
     return Long.bitCount(mask);
@@ -138,6 +168,11 @@ public class TinyMask implements Mask<TinyMask> {
       return new TinyMask(word);
     }
 
+    @Override
+    public TinyMask read(ByteBuffer in) {
+      return new TinyMask(in.getLong());
+    }
+
     @Override
     public TinyMask emptySingleton() {
       return EMPTY;
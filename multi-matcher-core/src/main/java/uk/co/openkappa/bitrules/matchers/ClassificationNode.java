@@ -2,6 +2,9 @@ package uk.co.openkappa.bitrules.matchers;
 
 import uk.co.openkappa.bitrules.Mask;
 
+import java.io.DataOutput;
+import java.io.IOException;
+
 public interface ClassificationNode<Input, MaskType extends Mask<MaskType>> {
 
   MaskType match(Input input);
@@ -9,4 +12,13 @@ public interface ClassificationNode<Input, MaskType extends Mask<MaskType>> {
   default float averageSelectivity() {
     return 1;
   }
+
+  /**
+   * Writes the node to a snapshot
+   * @param out the output
+   * @throws IOException if the node can't be written
+   */
+  default void write(DataOutput out) throws IOException {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " can't be written to a snapshot");
+  }
 }
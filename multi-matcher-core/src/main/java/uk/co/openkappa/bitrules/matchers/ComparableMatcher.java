@@ -14,9 +14,11 @@ public class ComparableMatcher<T, U, MaskType extends Mask<MaskType>> implements
 
   private final Function<T, U> accessor;
   private final MaskType wildcards;
+  private boolean anyWildcards;
   private final Comparator<U> comparator;
   private final EnumMap<Operation, ComparableNode<U, MaskType>> children = new EnumMap<>(Operation.class);
   private final MaskType empty;
+  private ComparableNode<U, MaskType>[] frozen;
 
   public ComparableMatcher(Function<T, U> accessor, Comparator<U> comparator, MaskFactory<MaskType> maskFactory, int max) {
     this.accessor = accessor;
@@ -26,9 +28,17 @@ public class ComparableMatcher<T, U, MaskType extends Mask<MaskType>> implements
   }
 
   @Override
-  public MaskType match(T value, MaskType context) {
-    MaskType result = matchValue(accessor.apply(value), context);
-    return context.inPlaceAnd(result.or(wildcards));
+  public MaskType match(T value, MaskType context, MaskType scratch) {
+    if (anyWildcards && context.isSubsetOf(wildcards)) {
+      // nothing left to reject on this attribute
+      return context;
+    }
+    U attribute = accessor.apply(value);
+    MaskType temp = scratch.resetTo(wildcards);
+    for (ComparableNode<U, MaskType> component : frozen) {
+      temp = temp.inPlaceOr(component.match(attribute));
+    }
+    return context.inPlaceAnd(temp);
   }
 
   @Override
@@ -42,6 +52,7 @@ public class ComparableMatcher<T, U, MaskType extends Mask<MaskType>> implements
   public Matcher<T, MaskType> freeze() {
     optimise();
     wildcards.optimise();
+    anyWildcards = !wildcards.isEmpty();
     return this;
   }
 
@@ -59,18 +70,11 @@ public class ComparableMatcher<T, U, MaskType extends Mask<MaskType>> implements
     children.computeIfAbsent(relation, r -> new ComparableNode<>(comparator, r, empty)).add(threshold, priority);
   }
 
-  private MaskType matchValue(U value, MaskType context) {
-    MaskType temp = empty.clone();
-    for (ComparableNode<U, MaskType> component : children.values()) {
-      temp = temp.inPlaceOr(component.match(value));
-    }
-    return context.inPlaceAnd(temp.inPlaceOr(wildcards));
-  }
-
   public void optimise() {
     Map<Operation, ComparableNode<U, MaskType>> optimised = new EnumMap<>(Operation.class);
     children.forEach((op, node) -> optimised.put(op, node.freeze()));
     children.putAll(optimised);
+    frozen = children.values().toArray(ComparableNode[]::new);
   }
 
 }
@@ -4,6 +4,9 @@ import uk.co.openkappa.bitrules.*;
 import uk.co.openkappa.bitrules.masks.MaskFactory;
 import uk.co.openkappa.bitrules.matchers.nodes.DoubleNode;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.function.ToDoubleFunction;
@@ -17,6 +20,8 @@ public class DoubleMatcher<T, MaskType extends Mask<MaskType>> implements Constr
   private final Map<Operation, DoubleNode<MaskType>> children = new EnumMap<>(Operation.class);
   private final MaskType empty;
   private final MaskType wildcards;
+  private boolean anyWildcards;
+  private DoubleNode<MaskType>[] frozen;
 
   public DoubleMatcher(ToDoubleFunction<T> accessor, MaskFactory<MaskType> maskFactory, int max) {
     this.accessor = accessor;
@@ -25,9 +30,17 @@ public class DoubleMatcher<T, MaskType extends Mask<MaskType>> implements Constr
   }
 
   @Override
-  public MaskType match(T value, MaskType context) {
-    MaskType result = match(accessor.applyAsDouble(value), context);
-    return context.inPlaceAnd(result.inPlaceOr(wildcards));
+  public MaskType match(T value, MaskType context, MaskType scratch) {
+    if (anyWildcards && context.isSubsetOf(wildcards)) {
+      // nothing left to reject on this attribute
+      return context;
+    }
+    double attribute = accessor.applyAsDouble(value);
+    MaskType temp = scratch.resetTo(wildcards);
+    for (DoubleNode<MaskType> component : frozen) {
+      temp = component.or(attribute, temp);
+    }
+    return context.inPlaceAnd(temp);
   }
 
   @Override
@@ -43,26 +56,46 @@ public class DoubleMatcher<T, MaskType extends Mask<MaskType>> implements Constr
   public Matcher<T, MaskType> freeze() {
     optimise();
     wildcards.optimise();
+    anyWildcards = !wildcards.isEmpty();
     return this;
   }
 
-  private void add(Operation relation, double threshold, int priority) {
-    children.computeIfAbsent(relation, r -> new DoubleNode<>(r, empty))
-            .add(threshold, priority);
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeByte('D');
+    wildcards.write(out);
+    out.writeInt(children.size());
+    for (Map.Entry<Operation, DoubleNode<MaskType>> child : children.entrySet()) {
+      out.writeByte(child.getKey().ordinal());
+      child.getValue().write(out);
+    }
   }
 
-  private MaskType match(double value, MaskType result) {
-    MaskType temp = empty.clone();
-    for (DoubleNode<MaskType> component : children.values()) {
-      temp = temp.inPlaceOr(component.match(value, result.clone()));
+  @Override
+  public Matcher<T, MaskType> restore(ByteBuffer in, MaskFactory<MaskType> maskFactory) {
+    if (in.get() != 'D') {
+      throw new IllegalStateException("snapshot doesn't match the schema");
     }
-    return result.inPlaceAnd(temp);
+    wildcards.resetTo(maskFactory.read(in));
+    for (int i = in.getInt(); i > 0; --i) {
+      Operation relation = Operation.values()[in.get()];
+      children.put(relation, DoubleNode.read(relation, in, maskFactory));
+    }
+    frozen = children.values().toArray(DoubleNode[]::new);
+    anyWildcards = !wildcards.isEmpty();
+    return this;
+  }
+
+  private void add(Operation relation, double threshold, int priority) {
+    children.computeIfAbsent(relation, r -> new DoubleNode<>(r, empty))
+            .add(threshold, priority);
   }
 
   private void optimise() {
     Map<Operation, DoubleNode<MaskType>> optimised = new EnumMap<>(Operation.class);
     children.forEach((op, node) -> optimised.put(op, node.optimise()));
     children.putAll(optimised);
+    frozen = children.values().toArray(DoubleNode[]::new);
   }
 
   @Override
@@ -4,7 +4,9 @@ import uk.co.openkappa.bitrules.*;
 import uk.co.openkappa.bitrules.masks.MaskFactory;
 import uk.co.openkappa.bitrules.matchers.nodes.EqualityNode;
 import uk.co.openkappa.bitrules.matchers.nodes.InequalityNode;
+import uk.co.openkappa.bitrules.matchers.nodes.PrefixNode;
 
+import java.nio.ByteBuffer;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.function.Function;
@@ -17,6 +19,7 @@ public class GenericConstraintAccumulator<T, U, MaskType extends Mask<MaskType>>
   protected final Supplier<Map<U, MaskType>> mapSupplier;
   protected final EnumMap<Operation, MutableNode<U, MaskType>> nodes = new EnumMap<>(Operation.class);
   protected final MaskType wildcard;
+  protected final MaskType unconstrained;
   protected final MaskType empty;
   protected final int max;
   private final MaskFactory<MaskType> maskFactory;
@@ -28,6 +31,7 @@ public class GenericConstraintAccumulator<T, U, MaskType extends Mask<MaskType>>
     this.accessor = accessor;
     this.mapSupplier = mapSupplier;
     this.wildcard = maskFactory.contiguous(max);
+    this.unconstrained = maskFactory.contiguous(max);
     this.empty = maskFactory.emptySingleton();
     this.maskFactory = maskFactory;
     this.max = max;
@@ -40,12 +44,14 @@ public class GenericConstraintAccumulator<T, U, MaskType extends Mask<MaskType>>
         ((InequalityNode<U, MaskType>)nodes
                 .computeIfAbsent(constraint.getOperation(), op -> new InequalityNode<>(mapSupplier.get(), maskFactory.contiguous(max))))
                 .add(constraint.getValue(), priority);
+        unconstrained.remove(priority);
         return true;
       case EQ:
         ((EqualityNode<U, MaskType>)nodes
                 .computeIfAbsent(constraint.getOperation(), op -> new EqualityNode<>(mapSupplier.get(), empty, maskFactory.contiguous(max))))
                 .add(constraint.getValue(), priority);
         wildcard.remove(priority);
+        unconstrained.remove(priority);
         return true;
       default:
         return false;
@@ -55,10 +61,46 @@ public class GenericConstraintAccumulator<T, U, MaskType extends Mask<MaskType>>
   @Override
   public Matcher<T, MaskType> freeze() {
     wildcard.optimise();
+    unconstrained.optimise();
     EnumMap<Operation, ClassificationNode<U, MaskType>> frozen = new EnumMap<>(Operation.class);
     nodes.forEach((op, node) -> node.link(nodes));
     nodes.forEach((op, node) -> frozen.put(op, node.freeze()));
-    return new GenericMatcher<>(accessor, frozen, wildcard);
+    return new GenericMatcher<>(accessor, frozen, wildcard, unconstrained);
+  }
+
+  @Override
+  public Matcher<T, MaskType> restore(ByteBuffer in, MaskFactory<MaskType> maskFactory) {
+    return new GenericMatcher<>(accessor, restoreNodes(in, 'G', maskFactory), wildcard, unconstrained);
+  }
+
+  /**
+   * Reads the wildcards and frozen nodes of a matcher written by {@link GenericMatcher#write}
+   */
+  @SuppressWarnings("unchecked")
+  protected EnumMap<Operation, ClassificationNode<U, MaskType>> restoreNodes(ByteBuffer in, char type, MaskFactory<MaskType> maskFactory) {
+    if (in.get() != type) {
+      throw new IllegalStateException("snapshot doesn't match the schema");
+    }
+    wildcard.resetTo(maskFactory.read(in));
+    unconstrained.resetTo(in.get() != 0 ? maskFactory.read(in) : maskFactory.empty());
+    EnumMap<Operation, ClassificationNode<U, MaskType>> frozen = new EnumMap<>(Operation.class);
+    for (int i = in.getInt(); i > 0; --i) {
+      Operation operation = Operation.values()[in.get()];
+      switch (operation) {
+        case EQ:
+          frozen.put(operation, EqualityNode.read(in, mapSupplier.get(), maskFactory));
+          break;
+        case NE:
+          frozen.put(operation, InequalityNode.read(in, mapSupplier.get(), maskFactory));
+          break;
+        case STARTS_WITH:
+          frozen.put(operation, (ClassificationNode<U, MaskType>) (ClassificationNode<?, MaskType>) PrefixNode.read(in, maskFactory));
+          break;
+        default:
+          throw new IllegalStateException("unexpected " + operation + " node in snapshot");
+      }
+    }
+    return frozen;
   }
 
 }
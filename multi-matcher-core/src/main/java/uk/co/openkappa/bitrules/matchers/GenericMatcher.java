@@ -4,9 +4,14 @@ import uk.co.openkappa.bitrules.Mask;
 import uk.co.openkappa.bitrules.Matcher;
 import uk.co.openkappa.bitrules.Operation;
 
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.EnumMap;
+import java.util.Map;
 import java.util.function.Function;
 
+import static uk.co.openkappa.bitrules.Operation.EQ;
+import static uk.co.openkappa.bitrules.Operation.NE;
 import static uk.co.openkappa.bitrules.matchers.SelectivityHeuristics.avgCardinality;
 
 class GenericMatcher<T, U, MaskType extends Mask<MaskType>> implements Matcher<T, MaskType> {
@@ -14,35 +19,66 @@ class GenericMatcher<T, U, MaskType extends Mask<MaskType>> implements Matcher<T
   private final Function<T, U> accessor;
   private final EnumMap<Operation, ClassificationNode<U, MaskType>> nodes;
   private final MaskType wildcard;
+  private final MaskType unconstrained;
+  private final ClassificationNode<U, MaskType> eq;
+  private final ClassificationNode<U, MaskType> neq;
 
   GenericMatcher(Function<T, U> accessor,
                  EnumMap<Operation, ClassificationNode<U, MaskType>> nodes,
-                 MaskType wildcard) {
+                 MaskType wildcard,
+                 MaskType unconstrained) {
     this.accessor = accessor;
     this.nodes = nodes;
     this.wildcard = wildcard;
+    this.unconstrained = unconstrained.isEmpty() ? null : unconstrained;
+    this.eq = nodes.get(EQ);
+    this.neq = nodes.get(NE);
   }
 
   @Override
-  public MaskType match(T input, MaskType context) {
+  public MaskType match(T input, MaskType context, MaskType scratch) {
+    if (null != unconstrained && context.isSubsetOf(unconstrained)) {
+      // nothing left to reject on this attribute
+      return context;
+    }
     U value = accessor.apply(input);
-    MaskType result = context.clone();
-    for (var component : nodes.entrySet()) {
-      var op = component.getKey();
-      var node = component.getValue();
-      switch (op) {
-        case NE:
-          result = result.inPlaceAnd(node.match(value));
-          break;
-        default:
-          result = result.inPlaceAnd(node.match(value)).inPlaceOr(wildcard);
-      }
+    if (null != eq) {
+      context = context.inPlaceAnd(scratch.resetTo(wildcard).inPlaceOr(eq.match(value)));
+    }
+    if (null != neq) {
+      context = context.inPlaceAnd(neq.match(value));
     }
-    return context.inPlaceAnd(result);
+    return context;
   }
 
   @Override
   public float averageSelectivity() {
     return avgCardinality(nodes.values(), ClassificationNode::averageSelectivity);
   }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    write(out, 'G', wildcard, unconstrained, nodes);
+  }
+
+  /**
+   * Writes a matcher to be restored by {@link GenericConstraintAccumulator#restoreNodes}
+   */
+  static <MaskType extends Mask<MaskType>> void write(DataOutput out,
+                                                      char type,
+                                                      MaskType wildcard,
+                                                      MaskType unconstrained,
+                                                      Map<Operation, ? extends ClassificationNode<?, MaskType>> nodes) throws IOException {
+    out.writeByte(type);
+    wildcard.write(out);
+    out.writeBoolean(null != unconstrained);
+    if (null != unconstrained) {
+      unconstrained.write(out);
+    }
+    out.writeInt(nodes.size());
+    for (Map.Entry<Operation, ? extends ClassificationNode<?, MaskType>> node : nodes.entrySet()) {
+      out.writeByte(node.getKey().ordinal());
+      node.getValue().write(out);
+    }
+  }
 }
@@ -4,6 +4,9 @@ import uk.co.openkappa.bitrules.*;
 import uk.co.openkappa.bitrules.masks.MaskFactory;
 import uk.co.openkappa.bitrules.matchers.nodes.IntNode;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.function.ToIntFunction;
@@ -16,7 +19,9 @@ public class IntMatcher<T, MaskType extends Mask<MaskType>> implements Constrain
   private final ToIntFunction<T> accessor;
   private final EnumMap<Operation, IntNode<MaskType>> children = new EnumMap<>(Operation.class);
   private final MaskType wildcards;
+  private boolean anyWildcards;
   private final MaskType empty;
+  private IntNode<MaskType>[] frozen;
 
   public IntMatcher(ToIntFunction<T> accessor, MaskFactory<MaskType> maskFactory, int max) {
     this.accessor = accessor;
@@ -25,9 +30,17 @@ public class IntMatcher<T, MaskType extends Mask<MaskType>> implements Constrain
   }
 
   @Override
-  public MaskType match(T value, MaskType context) {
-    MaskType result = match(accessor.applyAsInt(value), context);
-    return context.inPlaceAnd(result.inPlaceOr(wildcards));
+  public MaskType match(T value, MaskType context, MaskType scratch) {
+    if (anyWildcards && context.isSubsetOf(wildcards)) {
+      // nothing left to reject on this attribute
+      return context;
+    }
+    int attribute = accessor.applyAsInt(value);
+    MaskType temp = scratch.resetTo(wildcards);
+    for (IntNode<MaskType> component : frozen) {
+      temp = component.or(attribute, temp);
+    }
+    return context.inPlaceAnd(temp);
   }
 
   @Override
@@ -43,6 +56,7 @@ public class IntMatcher<T, MaskType extends Mask<MaskType>> implements Constrain
   public Matcher<T, MaskType> freeze() {
     optimise();
     wildcards.optimise();
+    anyWildcards = !wildcards.isEmpty();
     return this;
   }
 
@@ -52,22 +66,41 @@ public class IntMatcher<T, MaskType extends Mask<MaskType>> implements Constrain
   }
 
 
-  private void add(Operation relation, int threshold, int priority) {
-    children.computeIfAbsent(relation, r -> new IntNode<>(r, empty)).add(threshold, priority);
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeByte('I');
+    wildcards.write(out);
+    out.writeInt(children.size());
+    for (Map.Entry<Operation, IntNode<MaskType>> child : children.entrySet()) {
+      out.writeByte(child.getKey().ordinal());
+      child.getValue().write(out);
+    }
   }
 
-  private MaskType match(int value, MaskType result) {
-    MaskType temp = empty.clone();
-    for (IntNode<MaskType> component : children.values()) {
-      temp = temp.inPlaceOr(component.apply(value, result.clone()));
+  @Override
+  public Matcher<T, MaskType> restore(ByteBuffer in, MaskFactory<MaskType> maskFactory) {
+    if (in.get() != 'I') {
+      throw new IllegalStateException("snapshot doesn't match the schema");
     }
-    return result.inPlaceAnd(temp);
+    wildcards.resetTo(maskFactory.read(in));
+    for (int i = in.getInt(); i > 0; --i) {
+      Operation relation = Operation.values()[in.get()];
+      children.put(relation, IntNode.read(relation, in, maskFactory));
+    }
+    frozen = children.values().toArray(IntNode[]::new);
+    anyWildcards = !wildcards.isEmpty();
+    return this;
+  }
+
+  private void add(Operation relation, int threshold, int priority) {
+    children.computeIfAbsent(relation, r -> new IntNode<>(r, empty)).add(threshold, priority);
   }
 
   private void optimise() {
     Map<Operation, IntNode<MaskType>> optimised = new EnumMap<>(Operation.class);
     children.forEach((op, node) -> optimised.put(op, node.optimise()));
     children.putAll(optimised);
+    frozen = children.values().toArray(IntNode[]::new);
   }
 
 
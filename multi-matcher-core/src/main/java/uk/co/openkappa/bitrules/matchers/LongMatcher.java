@@ -4,6 +4,9 @@ import uk.co.openkappa.bitrules.*;
 import uk.co.openkappa.bitrules.masks.MaskFactory;
 import uk.co.openkappa.bitrules.matchers.nodes.LongNode;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.function.ToLongFunction;
@@ -17,6 +20,8 @@ public class LongMatcher<T, MaskType extends Mask<MaskType>> implements Constrai
   private final Map<Operation, LongNode<MaskType>> children = new EnumMap<>(Operation.class);
   private final MaskType empty;
   private final MaskType wildcards;
+  private boolean anyWildcards;
+  private LongNode<MaskType>[] frozen;
 
   public LongMatcher(ToLongFunction<T> accessor, MaskFactory<MaskType> maskFactory, int max) {
     this.accessor = accessor;
@@ -25,9 +30,17 @@ public class LongMatcher<T, MaskType extends Mask<MaskType>> implements Constrai
   }
 
   @Override
-  public MaskType match(T value, MaskType context) {
-    MaskType result = match(accessor.applyAsLong(value), context);
-    return context.inPlaceAnd(result.inPlaceOr(wildcards));
+  public MaskType match(T value, MaskType context, MaskType scratch) {
+    if (anyWildcards && context.isSubsetOf(wildcards)) {
+      // nothing left to reject on this attribute
+      return context;
+    }
+    long attribute = accessor.applyAsLong(value);
+    MaskType temp = scratch.resetTo(wildcards);
+    for (LongNode<MaskType> component : frozen) {
+      temp = component.or(attribute, temp);
+    }
+    return context.inPlaceAnd(temp);
   }
 
   @Override
@@ -43,26 +56,46 @@ public class LongMatcher<T, MaskType extends Mask<MaskType>> implements Constrai
   public Matcher<T, MaskType> freeze() {
     optimise();
     wildcards.optimise();
+    anyWildcards = !wildcards.isEmpty();
     return this;
   }
 
 
-  private void add(Operation relation, long threshold, int priority) {
-    children.computeIfAbsent(relation, r -> new LongNode<>(r, empty)).add(threshold, priority);
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeByte('J');
+    wildcards.write(out);
+    out.writeInt(children.size());
+    for (Map.Entry<Operation, LongNode<MaskType>> child : children.entrySet()) {
+      out.writeByte(child.getKey().ordinal());
+      child.getValue().write(out);
+    }
   }
 
-  private MaskType match(long value, MaskType result) {
-    MaskType temp = empty.clone();
-    for (LongNode<MaskType> component : children.values()) {
-      temp = temp.inPlaceOr(component.apply(value, result.clone()));
+  @Override
+  public Matcher<T, MaskType> restore(ByteBuffer in, MaskFactory<MaskType> maskFactory) {
+    if (in.get() != 'J') {
+      throw new IllegalStateException("snapshot doesn't match the schema");
     }
-    return result.inPlaceAnd(temp);
+    wildcards.resetTo(maskFactory.read(in));
+    for (int i = in.getInt(); i > 0; --i) {
+      Operation relation = Operation.values()[in.get()];
+      children.put(relation, LongNode.read(relation, in, maskFactory));
+    }
+    frozen = children.values().toArray(LongNode[]::new);
+    anyWildcards = !wildcards.isEmpty();
+    return this;
+  }
+
+  private void add(Operation relation, long threshold, int priority) {
+    children.computeIfAbsent(relation, r -> new LongNode<>(r, empty)).add(threshold, priority);
   }
 
   private void optimise() {
     Map<Operation, LongNode<MaskType>> optimised = new EnumMap<>(Operation.class);
     children.forEach((op, node) -> optimised.put(op, node.optimise()));
     children.putAll(optimised);
+    frozen = children.values().toArray(LongNode[]::new);
   }
 
   @Override
@@ -5,6 +5,10 @@ import uk.co.openkappa.bitrules.Mask;
 import java.util.Collection;
 import java.util.function.ToDoubleFunction;
 
+/**
+ * Estimates how many constraints a value of an attribute will typically leave
+ * in place. Lower is more selective, so matchers with lower values are applied first.
+ */
 public class SelectivityHeuristics {
 
   public static <MaskType extends Mask<MaskType>> float avgCardinality(Collection<MaskType> masks) {
@@ -12,7 +16,7 @@ public class SelectivityHeuristics {
     for (MaskType mask : masks) {
       total += mask.cardinality();
     }
-    return ((float) masks.size()) / total;
+    return masks.isEmpty() ? 0 : ((float) total) / masks.size();
   }
 
   public static <MaskType extends Mask<MaskType>> float avgCardinality(MaskType[] masks) {
@@ -20,7 +24,7 @@ public class SelectivityHeuristics {
     for (MaskType mask : masks) {
       total += mask.cardinality();
     }
-    return ((float) masks.length) / total;
+    return masks.length == 0 ? 0 : ((float) total) / masks.length;
   }
 
   public static <Node> float avgCardinality(Collection<Node> nodes, ToDoubleFunction<Node> selectivity) {
@@ -30,6 +34,6 @@ public class SelectivityHeuristics {
       avg += selectivity.applyAsDouble(node);
       ++count;
     }
-    return avg / count;
+    return count == 0 ? 0 : avg / count;
   }
 }
@@ -8,6 +8,9 @@ import uk.co.openkappa.bitrules.masks.MaskFactory;
 import uk.co.openkappa.bitrules.matchers.nodes.ComparableNode;
 import uk.co.openkappa.bitrules.matchers.nodes.PrefixNode;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
@@ -46,50 +49,81 @@ public class StringConstraintAccumulator<Input, MaskType extends Mask<MaskType>>
         return false;
     }
     wildcard.remove(priority);
+    unconstrained.remove(priority);
     return true;
   }
 
   @Override
   public Matcher<Input, MaskType> freeze() {
     wildcard.optimise();
+    unconstrained.optimise();
     EnumMap<Operation, ClassificationNode<String, MaskType>> frozen = new EnumMap<>(Operation.class);
     nodes.forEach((op, node) -> node.link(nodes));
     nodes.forEach((op, node) -> frozen.put(op, node.freeze()));
-    return new StringMatcher<>(accessor, frozen, wildcard);
+    return new StringMatcher<>(accessor, frozen, wildcard, unconstrained);
+  }
+
+  @Override
+  public Matcher<Input, MaskType> restore(ByteBuffer in, MaskFactory<MaskType> maskFactory) {
+    return new StringMatcher<>(accessor, restoreNodes(in, 'S', maskFactory), wildcard, unconstrained);
   }
 
   private static class StringMatcher<T, MaskType extends Mask<MaskType>> implements Matcher<T, MaskType> {
 
     private final Function<T, String> accessor;
-    private final EnumMap<Operation, ClassificationNode<String, MaskType>> nodes;
     private final MaskType wildcard;
+    private final MaskType unconstrained;
+    private final ClassificationNode<String, MaskType> eq;
+    private final ClassificationNode<String, MaskType> prefix;
+    private final ClassificationNode<String, MaskType> neq;
 
-    StringMatcher(Function<T, String> accessor, EnumMap<Operation, ClassificationNode<String, MaskType>> nodes, MaskType wildcard) {
+    StringMatcher(Function<T, String> accessor,
+                  EnumMap<Operation, ClassificationNode<String, MaskType>> nodes,
+                  MaskType wildcard,
+                  MaskType unconstrained) {
       this.accessor = accessor;
-      this.nodes = nodes;
       this.wildcard = wildcard;
+      this.unconstrained = unconstrained.isEmpty() ? null : unconstrained;
+      this.eq = nodes.get(EQ);
+      this.prefix = nodes.get(STARTS_WITH);
+      this.neq = nodes.get(NE);
     }
 
     @Override
-    public MaskType match(T input, MaskType context) {
+    public MaskType match(T input, MaskType context, MaskType scratch) {
+      if (null != unconstrained && context.isSubsetOf(unconstrained)) {
+        return context;
+      }
       String value = accessor.apply(input);
-      MaskType result = context.clone();
-      var eq = nodes.get(EQ);
-      var prefix = nodes.get(STARTS_WITH);
-      if (null != prefix) {
-        result = result.inPlaceAnd(prefix.match(value));
+      if (null != prefix || null != eq) {
+        MaskType result = scratch.resetTo(wildcard);
+        if (null != prefix) {
+          result = result.inPlaceOr(prefix.match(value));
+        }
         if (null != eq) {
           result = result.inPlaceOr(eq.match(value));
         }
-        result = result.inPlaceOr(wildcard);
-      } else if (null != eq) {
-        result = result.inPlaceAnd(eq.match(value)).inPlaceOr(wildcard);
+        context = context.inPlaceAnd(result);
+      }
+      if (null != neq) {
+        context = context.inPlaceAnd(neq.match(value));
+      }
+      return context;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+      EnumMap<Operation, ClassificationNode<String, MaskType>> nodes = new EnumMap<>(Operation.class);
+      if (null != eq) {
+        nodes.put(EQ, eq);
+      }
+      if (null != prefix) {
+        nodes.put(STARTS_WITH, prefix);
       }
-      var neq = nodes.get(NE);
       if (null != neq) {
-        result = result.inPlaceAnd(neq.match(value));
+        nodes.put(NE, neq);
       }
-      return context.inPlaceAnd(result);
+      GenericMatcher.write(out, 'S', wildcard, unconstrained, nodes);
     }
   }
 
@@ -37,10 +37,14 @@ public class ComparableNode<T, MaskType extends Mask<MaskType>> implements Mutab
   @Override
   public MaskType match(T value) {
     switch (operation) {
-      case GE:
       case EQ:
-      case LE:
         return sets.getOrDefault(value, empty);
+      case GE:
+        Map.Entry<T, MaskType> floor = sets.floorEntry(value);
+        return null == floor ? empty : floor.getValue();
+      case LE:
+        Map.Entry<T, MaskType> ceiling = sets.ceilingEntry(value);
+        return null == ceiling ? empty : ceiling.getValue();
       case LT:
         Map.Entry<T, MaskType> higher = sets.higherEntry(value);
         return null == higher ? empty : higher.getValue();
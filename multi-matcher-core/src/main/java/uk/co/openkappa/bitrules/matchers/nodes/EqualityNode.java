@@ -2,9 +2,13 @@ package uk.co.openkappa.bitrules.matchers.nodes;
 
 import uk.co.openkappa.bitrules.Mask;
 import uk.co.openkappa.bitrules.Operation;
+import uk.co.openkappa.bitrules.masks.MaskFactory;
 import uk.co.openkappa.bitrules.matchers.ClassificationNode;
 import uk.co.openkappa.bitrules.matchers.MutableNode;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -51,6 +55,19 @@ public class EqualityNode<T, MaskType extends Mask<MaskType>> implements Mutable
     }
   }
 
+  /**
+   * Reads a frozen node written to a snapshot
+   * @param in the buffer
+   * @param segments an empty map to read the segments into
+   * @param maskFactory the mask factory
+   * @return the frozen node
+   */
+  public static <T, MaskType extends Mask<MaskType>>
+  ClassificationNode<T, MaskType> read(ByteBuffer in, Map<T, MaskType> segments, MaskFactory<MaskType> maskFactory) {
+    Nodes.readSegments(in, segments, maskFactory);
+    return new OptimisedGeneralEqualityNode<>(segments, maskFactory.emptySingleton());
+  }
+
   private MaskType maskWith(int priority) {
     MaskType mask = empty.clone();
     mask.add(priority);
@@ -77,5 +94,10 @@ public class EqualityNode<T, MaskType extends Mask<MaskType>> implements Mutable
     public float averageSelectivity() {
       return avgCardinality(segments.values());
     }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+      Nodes.writeSegments(out, segments);
+    }
   }
 }
@@ -0,0 +1,105 @@
+package uk.co.openkappa.bitrules.matchers.nodes;
+
+/**
+ * Lays sorted thresholds out in Eytzinger order, the breadth first order of the implicit
+ * binary search tree over them, with the root at slot 1 and the children of slot k at 2k
+ * and 2k + 1. A search touches the levels in turn, the first few of which share cache
+ * lines, and only the slot it descends to depends on each comparison, so the loop has no
+ * unpredictable branch. Slot 0 is where searches which run off the end land.
+ */
+final class Eytzinger {
+
+  private Eytzinger() {
+  }
+
+  /**
+   * @param count the number of sorted thresholds
+   * @return the sorted position of the threshold in each slot, and count in slot 0
+   */
+  static int[] positions(int count) {
+    int[] positions = new int[count + 1];
+    positions[0] = count;
+    fill(positions, 0, 1);
+    return positions;
+  }
+
+  static int[] layout(int[] sorted, int[] positions) {
+    int[] layout = new int[positions.length];
+    for (int slot = 1; slot < layout.length; ++slot) {
+      layout[slot] = sorted[positions[slot]];
+    }
+    return layout;
+  }
+
+  static long[] layout(long[] sorted, int[] positions) {
+    long[] layout = new long[positions.length];
+    for (int slot = 1; slot < layout.length; ++slot) {
+      layout[slot] = sorted[positions[slot]];
+    }
+    return layout;
+  }
+
+  static long[] layout(double[] sorted, int[] positions) {
+    long[] layout = new long[positions.length];
+    for (int slot = 1; slot < layout.length; ++slot) {
+      layout[slot] = sortable(sorted[positions[slot]]);
+    }
+    return layout;
+  }
+
+  /**
+   * Maps a double to a long which sorts the same way under {@link Double#compare}, so
+   * double thresholds can be searched with integer comparisons.
+   */
+  static long sortable(double value) {
+    long bits = Double.doubleToLongBits(value);
+    return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+  }
+
+  /**
+   * @return the slot of the first threshold not less than the value, or 0 if there isn't one
+   */
+  static int lowerBound(int[] layout, int value) {
+    int slot = 1;
+    while (slot < layout.length) {
+      slot = 2 * slot + (layout[slot] < value ? 1 : 0);
+    }
+    return slot >>> (Integer.numberOfTrailingZeros(~slot) + 1);
+  }
+
+  /**
+   * @return the slot of the first threshold greater than the value, or 0 if there isn't one
+   */
+  static int upperBound(int[] layout, int value) {
+    int slot = 1;
+    while (slot < layout.length) {
+      slot = 2 * slot + (layout[slot] <= value ? 1 : 0);
+    }
+    return slot >>> (Integer.numberOfTrailingZeros(~slot) + 1);
+  }
+
+  static int lowerBound(long[] layout, long value) {
+    int slot = 1;
+    while (slot < layout.length) {
+      slot = 2 * slot + (layout[slot] < value ? 1 : 0);
+    }
+    return slot >>> (Integer.numberOfTrailingZeros(~slot) + 1);
+  }
+
+  static int upperBound(long[] layout, long value) {
+    int slot = 1;
+    while (slot < layout.length) {
+      slot = 2 * slot + (layout[slot] <= value ? 1 : 0);
+    }
+    return slot >>> (Integer.numberOfTrailingZeros(~slot) + 1);
+  }
+
+  private static int fill(int[] positions, int next, int slot) {
+    if (slot < positions.length) {
+      next = fill(positions, next, 2 * slot);
+      positions[slot] = next++;
+      next = fill(positions, next, 2 * slot + 1);
+    }
+    return next;
+  }
+}
@@ -1,9 +1,13 @@
 package uk.co.openkappa.bitrules.matchers.nodes;
 
 import uk.co.openkappa.bitrules.Mask;
+import uk.co.openkappa.bitrules.masks.MaskFactory;
 import uk.co.openkappa.bitrules.matchers.ClassificationNode;
 import uk.co.openkappa.bitrules.matchers.MutableNode;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -51,6 +55,20 @@ public class InequalityNode<T, MaskType extends Mask<MaskType>> implements Mutab
     return new OptimisedGeneralEqualityNode<>(segmentOptimiser.apply(segments), wildcard);
   }
 
+  /**
+   * Reads a frozen node written to a snapshot
+   * @param in the buffer
+   * @param segments an empty map to read the segments into
+   * @param maskFactory the mask factory
+   * @return the frozen node
+   */
+  public static <T, MaskType extends Mask<MaskType>>
+  ClassificationNode<T, MaskType> read(ByteBuffer in, Map<T, MaskType> segments, MaskFactory<MaskType> maskFactory) {
+    MaskType wildcard = maskFactory.read(in);
+    Nodes.readSegments(in, segments, maskFactory);
+    return new OptimisedGeneralEqualityNode<>(segments, wildcard);
+  }
+
   private MaskType newMaskWithout(int priority) {
     return without(wildcard.clone(), priority);
   }
@@ -76,5 +94,11 @@ public class InequalityNode<T, MaskType extends Mask<MaskType>> implements Mutab
     public float averageSelectivity() {
       return avgCardinality(segments.values());
     }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+      wildcard.write(out);
+      Nodes.writeSegments(out, segments);
+    }
   }
 }
@@ -2,8 +2,13 @@ package uk.co.openkappa.bitrules.matchers.nodes;
 
 import uk.co.openkappa.bitrules.Mask;
 import uk.co.openkappa.bitrules.Operation;
+import uk.co.openkappa.bitrules.masks.MaskFactory;
+
+import java.io.DataOutput;
+import java.io.IOException;
 
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import static uk.co.openkappa.bitrules.matchers.SelectivityHeuristics.avgCardinality;
@@ -17,14 +22,22 @@ public class LongNode<MaskType extends Mask<MaskType>> {
   private long[] thresholds = new long[16];
   private MaskType[] sets;
   private int count = 0;
+  private MaskType all;
+  private int[] positions;
+  private long[] layout;
 
   public LongNode(Operation relation, MaskType empty) {
     this.relation = relation;
     this.empty = empty;
     this.sets = (MaskType[]) Array.newInstance(empty.getClass(), 16);
+    this.all = empty.clone();
   }
 
   public void add(long value, int priority) {
+    layout = null;
+    if (relation == Operation.NE) {
+      all.add(priority);
+    }
     if (count > 0 && value > thresholds[count - 1]) {
       ensureCapacity();
       int position = count;
@@ -60,19 +73,40 @@ public class LongNode<MaskType extends Mask<MaskType>> {
   }
 
   public MaskType apply(long value, MaskType context) {
+    return relation == Operation.NE
+            ? context.inPlaceAnd(all).inPlaceAndNot(equalTo(value))
+            : context.inPlaceAnd(match(value));
+  }
+
+  /**
+   * Adds the rules which accept the value to a union of masks. An inequality node
+   * adds every rule it holds except those for the value itself, which is safe because
+   * each rule has at most one constraint per attribute, so no other node in the union
+   * holds this node's rules.
+   * @param value the attribute value
+   * @param union the union so far
+   * @return the union
+   */
+  public MaskType or(long value, MaskType union) {
+    return relation == Operation.NE
+            ? union.inPlaceOr(all).inPlaceAndNot(equalTo(value))
+            : union.inPlaceOr(match(value));
+  }
+
+  public MaskType match(long value) {
     switch (relation) {
       case GT:
-        return context.inPlaceAnd(findRangeEncoded(value));
+        return at(lowerBound(value) - 1);
       case GE:
-        return context.inPlaceAnd(findRangeEncodedInclusive(value));
+        return at(upperBound(value) - 1);
       case LT:
-        return context.inPlaceAnd(findReverseRangeEncoded(value));
+        return at(upperBound(value));
       case LE:
-        return context.inPlaceAnd(findReverseRangeEncodedInclusive(value));
+        return at(lowerBound(value));
       case EQ:
-        return context.inPlaceAnd(findEqualityEncoded(value));
+        return equalTo(value);
       default:
-        return context;
+        return empty;
     }
   }
 
@@ -89,6 +123,8 @@ public class LongNode<MaskType extends Mask<MaskType>> {
       default:
     }
     trim();
+    all.optimise();
+    layout();
     return this;
   }
 
@@ -96,33 +132,83 @@ public class LongNode<MaskType extends Mask<MaskType>> {
     return avgCardinality(sets);
   }
 
-  private MaskType findEqualityEncoded(long value) {
-    int index = Arrays.binarySearch(thresholds, 0, count, value);
-    return index >= 0 ? sets[index] : empty;
+  /**
+   * Writes the optimised thresholds and their masks
+   * @param out the output
+   * @throws IOException if the node can't be written
+   */
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(count);
+    for (int i = 0; i < count; ++i) {
+      out.writeLong(thresholds[i]);
+    }
+    for (int i = 0; i < count; ++i) {
+      sets[i].write(out);
+    }
   }
 
-  private MaskType findRangeEncoded(long value) {
-    int pos = Arrays.binarySearch(thresholds, 0, count, value);
-    int index = (pos >= 0 ? pos : -(pos + 1)) - 1;
-    return index >= 0 && index < count ? sets[index] : empty;
+  /**
+   * Reads an optimised node written by {@link #write(DataOutput)}
+   * @param relation the relation the node encodes
+   * @param in the buffer
+   * @param maskFactory the mask factory
+   * @return the node, already optimised
+   */
+  public static <MaskType extends Mask<MaskType>>
+  LongNode<MaskType> read(Operation relation, ByteBuffer in, MaskFactory<MaskType> maskFactory) {
+    LongNode<MaskType> node = new LongNode<>(relation, maskFactory.emptySingleton());
+    int count = in.getInt();
+    node.thresholds = new long[count];
+    in.asLongBuffer().get(node.thresholds);
+    in.position(in.position() + count * Long.BYTES);
+    node.sets = (MaskType[]) Array.newInstance(node.empty.getClass(), count);
+    for (int i = 0; i < count; ++i) {
+      node.sets[i] = maskFactory.read(in);
+    }
+    if (relation == Operation.NE) {
+      for (int i = 0; i < count; ++i) {
+        node.all = node.all.inPlaceOr(node.sets[i]);
+      }
+    }
+    node.count = count;
+    node.layout();
+    return node;
   }
 
-  private MaskType findRangeEncodedInclusive(long value) {
-    int pos = Arrays.binarySearch(thresholds, 0, count, value);
-    int index = (pos >= 0 ? pos : -(pos + 1) - 1);
-    return index >= 0 && index < count ? sets[index] : empty;
+  private MaskType equalTo(long value) {
+    int position = lowerBound(value);
+    return position < count && thresholds[position] == value ? sets[position] : empty;
   }
 
-  private MaskType findReverseRangeEncoded(long value) {
-    int pos = Arrays.binarySearch(thresholds, 0, count, value);
-    int index = (pos >= 0 ? pos + 1 : -(pos + 1));
-    return index >= 0 && index < count ? sets[index] : empty;
+  private MaskType at(int position) {
+    return position >= 0 && position < count ? sets[position] : empty;
+  }
+
+  /**
+   * @return the position of the first threshold not less than the value
+   */
+  private int lowerBound(long value) {
+    if (null == layout) {
+      int position = Arrays.binarySearch(thresholds, 0, count, value);
+      return position >= 0 ? position : -(position + 1);
+    }
+    return positions[Eytzinger.lowerBound(layout, value)];
+  }
+
+  /**
+   * @return the position of the first threshold greater than the value
+   */
+  private int upperBound(long value) {
+    if (null == layout) {
+      int position = Arrays.binarySearch(thresholds, 0, count, value);
+      return position >= 0 ? position + 1 : -(position + 1);
+    }
+    return positions[Eytzinger.upperBound(layout, value)];
   }
 
-  private MaskType findReverseRangeEncodedInclusive(long value) {
-    int pos = Arrays.binarySearch(thresholds, 0, count, value);
-    int index = (pos >= 0 ? pos : -(pos + 1));
-    return index < count ? sets[index] : empty;
+  private void layout() {
+    positions = Eytzinger.positions(count);
+    layout = Eytzinger.layout(thresholds, positions);
   }
 
   private void reverseRangeEncode() {
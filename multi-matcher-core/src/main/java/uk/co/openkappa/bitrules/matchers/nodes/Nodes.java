@@ -1,7 +1,13 @@
 package uk.co.openkappa.bitrules.matchers.nodes;
 
+import uk.co.openkappa.bitrules.ClassifierSnapshot;
+import uk.co.openkappa.bitrules.Mask;
 import uk.co.openkappa.bitrules.Operation;
+import uk.co.openkappa.bitrules.masks.MaskFactory;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -29,4 +35,20 @@ class Nodes {
     sb.setCharAt(sb.length() - 2, ']');
     return sb.toString();
   }
+
+  static <MaskType extends Mask<MaskType>> void writeSegments(DataOutput out, Map<?, MaskType> segments) throws IOException {
+    out.writeInt(segments.size());
+    for (Map.Entry<?, MaskType> segment : segments.entrySet()) {
+      ClassifierSnapshot.writeValue(out, segment.getKey());
+      segment.getValue().write(out);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T, MaskType extends Mask<MaskType>> void readSegments(ByteBuffer in, Map<T, MaskType> segments, MaskFactory<MaskType> maskFactory) {
+    for (int i = in.getInt(); i > 0; --i) {
+      T value = (T) ClassifierSnapshot.readValue(in);
+      segments.put(value, maskFactory.read(in));
+    }
+  }
 }
@@ -2,9 +2,13 @@ package uk.co.openkappa.bitrules.matchers.nodes;
 
 import org.apache.commons.collections4.trie.PatriciaTrie;
 import uk.co.openkappa.bitrules.Mask;
+import uk.co.openkappa.bitrules.masks.MaskFactory;
 import uk.co.openkappa.bitrules.matchers.ClassificationNode;
 import uk.co.openkappa.bitrules.matchers.MutableNode;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
@@ -31,7 +35,7 @@ public class PrefixNode<MaskType extends Mask<MaskType>> implements MutableNode<
 
   @Override
   public MaskType match(String value) {
-    int position = longest;
+    int position = Math.min(longest, value.length());
     while (position > 0) {
       MaskType match = map.get(value.substring(0, position));
       if (null != match) {
@@ -60,6 +64,23 @@ public class PrefixNode<MaskType extends Mask<MaskType>> implements MutableNode<
     return new PrefixNode<>(empty, map, longest);
   }
 
+  /**
+   * Reads a frozen node written to a snapshot
+   * @param in the buffer
+   * @param maskFactory the mask factory
+   * @return the frozen node
+   */
+  public static <MaskType extends Mask<MaskType>> PrefixNode<MaskType> read(ByteBuffer in, MaskFactory<MaskType> maskFactory) {
+    Map<String, MaskType> map = new HashMap<>();
+    Nodes.readSegments(in, map, maskFactory);
+    return new PrefixNode<>(maskFactory.emptySingleton(), map, map.keySet().stream().mapToInt(String::length).max().orElse(0));
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    Nodes.writeSegments(out, map);
+  }
+
   public void add(String prefix, int id) {
     map.compute(prefix, (p, mask) -> with(null == mask ? empty.clone() : mask, id));
   }
@@ -4,6 +4,9 @@ import uk.co.openkappa.bitrules.Mask;
 import uk.co.openkappa.bitrules.ConstraintAccumulator;
 import uk.co.openkappa.bitrules.masks.MaskFactory;
 
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
 /**
  * Effectively a factory for a column named constraints
  * @param <T> the type of the attribute values
@@ -16,4 +19,42 @@ public interface Attribute<T> {
    * @return a new matcher
    */
   <MaskType extends Mask<MaskType>> ConstraintAccumulator<T, MaskType> toMatcher(MaskFactory<MaskType> maskFactory, int max);
+
+  /**
+   * Extracts the value of the attribute for engines which switch on equal values rather
+   * than intersecting masks. The value must equal the normalised value of any equality
+   * constraint it satisfies.
+   * @return the extractor, or null if the attribute can't be switched on by value
+   */
+  default Function<T, Object> extractor() {
+    return null;
+  }
+
+  /**
+   * Extracts the value of the attribute as a long key, so engines which switch on equal
+   * values needn't box primitive values. The key must equal {@link #key(Object)} of the
+   * normalised value of any equality constraint the value satisfies.
+   * @return the key extractor, or null if the attribute's values aren't primitive
+   */
+  default ToLongFunction<T> keyExtractor() {
+    return null;
+  }
+
+  /**
+   * Gets the key of a normalised constraint value, for attributes with a key extractor
+   * @param normalised the normalised value
+   * @return the key
+   */
+  default long key(Object normalised) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Converts an equality constraint's value into the form produced by the extractor
+   * @param value the constraint value
+   * @return the normalised value
+   */
+  default Object normalise(Object value) {
+    return value;
+  }
 }
@@ -5,6 +5,8 @@ import uk.co.openkappa.bitrules.ConstraintAccumulator;
 import uk.co.openkappa.bitrules.masks.MaskFactory;
 import uk.co.openkappa.bitrules.matchers.DoubleMatcher;
 
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.function.ToDoubleFunction;
 
 /**
@@ -23,4 +25,24 @@ class DoubleAttribute<T> implements Attribute<T> {
   public <MaskType extends Mask<MaskType>> ConstraintAccumulator<T, MaskType> toMatcher(MaskFactory<MaskType> maskFactory, int max) {
     return new DoubleMatcher<>(accessor, maskFactory, max);
   }
+
+  @Override
+  public Function<T, Object> extractor() {
+    return accessor::applyAsDouble;
+  }
+
+  @Override
+  public Object normalise(Object value) {
+    return ((Number) value).doubleValue();
+  }
+
+  @Override
+  public ToLongFunction<T> keyExtractor() {
+    return value -> Double.doubleToLongBits(accessor.applyAsDouble(value));
+  }
+
+  @Override
+  public long key(Object normalised) {
+    return Double.doubleToLongBits(((Number) normalised).doubleValue());
+  }
 }
@@ -22,4 +22,9 @@ public class EnumAttribute<E extends Enum<E>, Input> implements Attribute<Input>
   public <MaskType extends Mask<MaskType>> ConstraintAccumulator<Input, MaskType> toMatcher(MaskFactory<MaskType> maskFactory, int max) {
     return new GenericConstraintAccumulator<>(() -> new EnumMap<>(type), accessor, maskFactory, max);
   }
+
+  @Override
+  public Function<Input, Object> extractor() {
+    return accessor::apply;
+  }
 }
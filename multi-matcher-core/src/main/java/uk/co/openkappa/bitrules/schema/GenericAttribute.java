@@ -25,4 +25,9 @@ class GenericAttribute<T, U> implements Attribute<T> {
   public <MaskType extends Mask<MaskType>> ConstraintAccumulator<T, MaskType> toMatcher(MaskFactory<MaskType> maskFactory, int max) {
     return new GenericConstraintAccumulator<>(HashMap::new, accessor, maskFactory, max);
   }
-}
\ No newline at end of file
+
+  @Override
+  public Function<T, Object> extractor() {
+    return accessor::apply;
+  }
+}
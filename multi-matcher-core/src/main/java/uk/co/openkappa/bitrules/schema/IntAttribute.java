@@ -5,6 +5,8 @@ import uk.co.openkappa.bitrules.ConstraintAccumulator;
 import uk.co.openkappa.bitrules.masks.MaskFactory;
 import uk.co.openkappa.bitrules.matchers.IntMatcher;
 
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.function.ToIntFunction;
 
 /**
@@ -23,4 +25,24 @@ public class IntAttribute<T> implements Attribute<T> {
   public <MaskType extends Mask<MaskType>> ConstraintAccumulator<T, MaskType> toMatcher(MaskFactory<MaskType> maskFactory, int max) {
     return new IntMatcher<>(accessor, maskFactory, max);
   }
+
+  @Override
+  public Function<T, Object> extractor() {
+    return accessor::applyAsInt;
+  }
+
+  @Override
+  public Object normalise(Object value) {
+    return ((Number) value).intValue();
+  }
+
+  @Override
+  public ToLongFunction<T> keyExtractor() {
+    return accessor::applyAsInt;
+  }
+
+  @Override
+  public long key(Object normalised) {
+    return ((Number) normalised).longValue();
+  }
 }
@@ -5,6 +5,7 @@ import uk.co.openkappa.bitrules.ConstraintAccumulator;
 import uk.co.openkappa.bitrules.masks.MaskFactory;
 import uk.co.openkappa.bitrules.matchers.LongMatcher;
 
+import java.util.function.Function;
 import java.util.function.ToLongFunction;
 
 /**
@@ -23,4 +24,24 @@ public class LongAttribute<T> implements Attribute<T> {
   public <MaskType extends Mask<MaskType>> ConstraintAccumulator<T, MaskType> toMatcher(MaskFactory<MaskType> maskFactory, int max) {
     return new LongMatcher<>(accessor, maskFactory, max);
   }
+
+  @Override
+  public Function<T, Object> extractor() {
+    return accessor::applyAsLong;
+  }
+
+  @Override
+  public Object normalise(Object value) {
+    return ((Number) value).longValue();
+  }
+
+  @Override
+  public ToLongFunction<T> keyExtractor() {
+    return accessor;
+  }
+
+  @Override
+  public long key(Object normalised) {
+    return ((Number) normalised).longValue();
+  }
 }
@@ -19,4 +19,9 @@ public class StringAttribute<Input> implements Attribute<Input> {
   public <MaskType extends Mask<MaskType>> ConstraintAccumulator<Input, MaskType> toMatcher(MaskFactory<MaskType> maskFactory, int max) {
     return new StringConstraintAccumulator<>(accessor, maskFactory, max);
   }
+
+  @Override
+  public Function<Input, Object> extractor() {
+    return accessor::apply;
+  }
 }
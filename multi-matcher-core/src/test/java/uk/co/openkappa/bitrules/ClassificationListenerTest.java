@@ -0,0 +1,92 @@
+package uk.co.openkappa.bitrules;
+
+import org.junit.jupiter.api.Test;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClassificationListenerTest {
+
+  @Test
+  public void testListenerSeesEachStage() {
+    RecordingListener listener = new RecordingListener();
+    ImmutableClassifier<int[], String> classifier = ImmutableClassifier.<Integer, int[], String>builder(schema())
+            .withListener(listener)
+            .build(rules());
+
+    assertEquals("BOTH", classifier.classification(new int[]{1, 1}).orElseThrow(AssertionError::new));
+    assertEquals(2, listener.stages.size());
+    assertEquals(Arrays.asList(2, 2), listener.stages);
+    assertEquals(-1, listener.emptiedAt);
+    assertTrue(listener.nanos >= 0);
+
+    listener.stages.clear();
+    assertFalse(classifier.classification(new int[]{2, 2}).isPresent());
+    assertEquals(0, (int) listener.stages.get(listener.stages.size() - 1));
+    assertEquals(listener.stages.size() - 1, listener.emptiedAt);
+  }
+
+  @Test
+  public void testListenerSeesSampledClassifications() {
+    RecordingListener listener = new RecordingListener();
+    ImmutableClassifier<int[], String> classifier = ImmutableClassifier.<Integer, int[], String>builder(schema())
+            .withListener(listener)
+            .withSampledEvents(2)
+            .build(rules());
+    for (int i = 0; i < 10; ++i) {
+      assertEquals("BOTH", classifier.classification(new int[]{1, 1}).orElseThrow(AssertionError::new));
+    }
+    assertEquals(10, listener.classifications);
+    assertEquals(20, listener.stages.size());
+    assertEquals(-1, listener.emptiedAt);
+
+    assertFalse(classifier.classification(new int[]{2, 2}).isPresent());
+    assertFalse(classifier.classification(new int[]{2, 2}).isPresent());
+    assertEquals(12, listener.classifications);
+    assertEquals(0, (int) listener.stages.get(listener.stages.size() - 1));
+    assertTrue(listener.emptiedAt >= 0);
+  }
+
+  @Test
+  public void testNoOpListenerIsNotRegistered() {
+    ImmutableClassifier<int[], String> classifier = ImmutableClassifier.<Integer, int[], String>builder(schema())
+            .withListener(ClassificationListener.NO_OP)
+            .build(rules());
+    assertEquals("BOTH", classifier.classification(new int[]{1, 1}).orElseThrow(AssertionError::new));
+  }
+
+  private static List<MatchingConstraint<Integer, String>> rules() {
+    return Arrays.asList(
+            MatchingConstraint.<Integer, String>anonymous().eq(0, 1).eq(1, 1).priority(1).classification("BOTH").build(),
+            MatchingConstraint.<Integer, String>anonymous().eq(0, 1).classification("FIRST").build());
+  }
+
+  private static Schema<Integer, int[]> schema() {
+    return Schema.<Integer, int[]>create()
+            .withAttribute(0, (int[] features) -> features[0])
+            .withAttribute(1, (int[] features) -> features[1]);
+  }
+
+  private static class RecordingListener implements ClassificationListener {
+    private final List<Integer> stages = new ArrayList<>();
+    private long nanos = -1;
+    private int emptiedAt;
+    private int classifications;
+
+    @Override
+    public void stage(int matcher, int cardinality) {
+      stages.add(cardinality);
+    }
+
+    @Override
+    public void classified(long nanos, int emptiedAt) {
+      this.nanos = nanos;
+      this.emptiedAt = emptiedAt;
+      ++classifications;
+    }
+  }
+}
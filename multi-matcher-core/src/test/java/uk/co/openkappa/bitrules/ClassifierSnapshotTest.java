@@ -0,0 +1,97 @@
+package uk.co.openkappa.bitrules;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.co.openkappa.bitrules.TestDomainObject.Colour;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClassifierSnapshotTest {
+
+  @Test
+  public void testRoundTripEveryMaskTier(@TempDir Path directory) throws IOException {
+    for (int count : new int[]{50, 1000, 5000, 70000}) {
+      List<MatchingConstraint<String, Integer>> rules = rules(count);
+      ImmutableClassifier<Object[], Integer> built = ImmutableClassifier.<String, Object[], Integer>builder(schema()).build(rules);
+      Path file = directory.resolve("classifier-" + count + ".bin");
+      ClassifierSnapshot.write(built, file);
+      Classifier<Object[], Integer> loaded = ClassifierSnapshot.load(file, schema());
+      Random random = new Random(count);
+      for (int i = 0; i < 500; ++i) {
+        Object[] input = input(random);
+        assertEquals(built.classifications(input).collect(toList()), loaded.classifications(input).collect(toList()));
+        assertEquals(built.classificationIndex(input), loaded.classificationIndex(input));
+      }
+    }
+  }
+
+  @Test
+  public void testRejectsOtherFiles() {
+    ByteBuffer garbage = ByteBuffer.wrap("not a snapshot".getBytes());
+    assertThrows(IOException.class, () -> ClassifierSnapshot.read(garbage, schema()));
+  }
+
+  @Test
+  public void testComparableAttributesCantBeWritten() {
+    Schema<String, Object[]> schema = Schema.<String, Object[]>create()
+            .withAttribute("comparable", (Object[] input) -> (String) input[3], Comparator.<String>naturalOrder());
+    ImmutableClassifier<Object[], Integer> classifier = ImmutableClassifier.<String, Object[], Integer>builder(schema)
+            .build(Collections.singletonList(MatchingConstraint.<String, Integer>anonymous()
+                    .ge("comparable", "b").classification(1).build()));
+    assertThrows(UnsupportedOperationException.class, () -> ClassifierSnapshot.write(classifier, new ByteArrayOutputStream()));
+  }
+
+  private static List<MatchingConstraint<String, Integer>> rules(int count) {
+    Random random = new Random(0);
+    List<MatchingConstraint<String, Integer>> rules = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      MatchingConstraint.Builder<String, Integer> rule = MatchingConstraint.<String, Integer>named("rule" + i)
+              .priority(random.nextInt(100))
+              .classification(i);
+      switch (random.nextInt(4)) {
+        case 0:
+          rule.ge("int", random.nextInt(100)).lt("long", (long) random.nextInt(100));
+          break;
+        case 1:
+          rule.le("double", random.nextDouble() * 100).eq("colour", Colour.values()[random.nextInt(3)]);
+          break;
+        case 2:
+          rule.startsWith("string", "s" + random.nextInt(10)).neq("generic", random.nextInt(5));
+          break;
+        default:
+          rule.eq("string", "s" + random.nextInt(20)).eq("generic", random.nextInt(5)).gt("int", random.nextInt(100));
+      }
+      rules.add(rule.build());
+    }
+    return rules;
+  }
+
+  private static Object[] input(Random random) {
+    return new Object[]{
+            random.nextInt(100),
+            (long) random.nextInt(100),
+            random.nextDouble() * 100,
+            "s" + random.nextInt(200),
+            Colour.values()[random.nextInt(3)],
+            random.nextInt(5)
+    };
+  }
+
+  private static Schema<String, Object[]> schema() {
+    return Schema.<String, Object[]>create()
+            .withAttribute("int", (Object[] input) -> (int) input[0])
+            .withAttribute("long", (Object[] input) -> (long) input[1])
+            .withAttribute("double", (Object[] input) -> (double) input[2])
+            .withStringAttribute("string", (Object[] input) -> (String) input[3])
+            .withEnumAttribute("colour", (Object[] input) -> (Colour) input[4], Colour.class)
+            .withAttribute("generic", (Object[] input) -> input[5]);
+  }
+}
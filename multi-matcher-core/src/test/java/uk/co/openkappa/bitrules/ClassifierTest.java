@@ -222,6 +222,46 @@ public class ClassifierTest {
     assertEquals("RED", classifier.classifications(test.setMeasure2(999)).collect(toList()).get(1));
   }
 
+  @Test
+  public void testWildcardDoesNotRestoreRejectedRule() {
+    Classifier<TestDomainObject, String> classifier =
+            ImmutableClassifier.<String, TestDomainObject, String>builder(Schema.<String, TestDomainObject>create()
+                    .withAttribute("measure2", TestDomainObject::getMeasure2)
+                    .withAttribute("measure3", TestDomainObject::getMeasure3)
+            ).build(Arrays.asList(
+                    MatchingConstraint.<String, String>named("rule1").eq("measure2", 1).priority(0).classification("RED").build(),
+                    MatchingConstraint.<String, String>named("rule2").eq("measure3", 1).priority(1).classification("BLUE").build()
+            ));
+
+    TestDomainObject test = TestDomainObject.random();
+    assertEquals(Collections.singletonList("BLUE"), classifier.classifications(test.setMeasure2(0).setMeasure3(1)).collect(toList()));
+    assertEquals(Collections.singletonList("RED"), classifier.classifications(test.setMeasure2(1).setMeasure3(0)).collect(toList()));
+  }
+
+  @Test
+  public void testIndexedResults() {
+    Classifier<TestDomainObject, String> classifier =
+            ImmutableClassifier.<String, TestDomainObject, String>builder(Schema.<String, TestDomainObject>create()
+                    .withAttribute("measure2", TestDomainObject::getMeasure2)
+            ).build(Arrays.asList(
+                    MatchingConstraint.<String, String>named("rule1").eq("measure2", 999).priority(1).classification("RED").build(),
+                    MatchingConstraint.<String, String>named("rule2").lt("measure2", 1000).priority(0).classification("BLUE").build()
+            ));
+
+    TestDomainObject test = TestDomainObject.random();
+    assertEquals(-1, classifier.classificationIndex(test.setMeasure2(1000)));
+    assertEquals("none", classifier.classificationOrElse(test, "none"));
+    assertEquals("BLUE", classifier.classificationAt(classifier.classificationIndex(test.setMeasure2(998))));
+    assertEquals("BLUE", classifier.classificationOrElse(test, "none"));
+    int index = classifier.classificationIndex(test.setMeasure2(999));
+    assertEquals("RED", classifier.classificationAt(index));
+    List<String> indexed = new ArrayList<>();
+    classifier.forEachClassificationIndex(test, i -> indexed.add(classifier.classificationAt(i)));
+    assertEquals(Arrays.asList("RED", "BLUE"), indexed);
+    assertEquals(indexed, classifier.classifications(test, new ArrayList<>()));
+    assertEquals(classifier.classifications(test).collect(toList()), indexed);
+  }
+
   @Test
   public void testLongRules() throws IOException {
     Classifier<TestDomainObject, String> classifier = ImmutableClassifier.<String, TestDomainObject, String>
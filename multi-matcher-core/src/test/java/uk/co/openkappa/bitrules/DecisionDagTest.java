@@ -0,0 +1,131 @@
+package uk.co.openkappa.bitrules;
+
+import org.junit.jupiter.api.Test;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.util.*;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DecisionDagTest {
+
+  @Test
+  public void testDagMatchesMasks() {
+    Random random = new Random(11);
+    List<MatchingConstraint<String, String>> rules = new ArrayList<>();
+    for (int i = 0; i < 300; ++i) {
+      MatchingConstraint.Builder<String, String> rule = MatchingConstraint.<String, String>named("rule" + i)
+              .eq("a", random.nextInt(5));
+      if (random.nextBoolean()) {
+        rule.eq("b", (long) random.nextInt(5));
+      }
+      if (random.nextInt(4) == 0) {
+        rule.eq("c", "value" + random.nextInt(3));
+      }
+      rules.add(rule.priority(random.nextInt(50)).classification("SEGMENT" + i).build());
+    }
+    Classifier<TestDomainObject, String> masks = ImmutableClassifier.<String, TestDomainObject, String>builder(schema()).build(rules);
+    Classifier<TestDomainObject, String> dag = ImmutableClassifier.<String, TestDomainObject, String>builder(schema())
+            .withDecisionDag().build(rules);
+    List<MatchingConstraint<String, String>> sorted = new ArrayList<>(rules);
+    sorted.sort(Comparator.comparingInt(rule -> ImmutableClassifier.ClassifierBuilder.order(rule.getPriority())));
+    DecisionDag<TestDomainObject, String> compiled = DecisionDag.compile(schema(), sorted, 10_000);
+    assertNotNull(compiled);
+    assertTrue(compiled.depth() <= 3);
+    TestDomainObject value = TestDomainObject.random();
+    for (int a = 0; a < 6; ++a) {
+      for (long b = 0; b < 6; ++b) {
+        for (int c = 0; c < 4; ++c) {
+          value.setMeasure2(a).setMeasure3(b).setField1("value" + c);
+          List<String> expected = masks.classifications(value).collect(toList());
+          assertEquals(expected, dag.classifications(value).collect(toList()));
+          assertEquals(expected, compiled.classifications(value).collect(toList()));
+          assertEquals(masks.classification(value), dag.classification(value));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testOnlyEqualityConstraintsCompile() {
+    List<MatchingConstraint<String, String>> rules = Arrays.asList(
+            MatchingConstraint.<String, String>named("rule1").eq("a", 1).classification("RED").build(),
+            MatchingConstraint.<String, String>named("rule2").lt("a", 1).classification("BLUE").build());
+    assertNull(DecisionDag.compile(schema(), rules, 1000));
+    Classifier<TestDomainObject, String> classifier = ImmutableClassifier.<String, TestDomainObject, String>builder(schema())
+            .withDecisionDag().build(rules);
+    assertEquals("BLUE", classifier.classification(TestDomainObject.random().setMeasure2(0)).orElseThrow(AssertionError::new));
+  }
+
+  @Test
+  public void testGivesUpWhenTooBig() {
+    List<MatchingConstraint<String, String>> rules = new ArrayList<>();
+    for (int i = 0; i < 50; ++i) {
+      rules.add(MatchingConstraint.<String, String>named("rule" + i).eq(i % 2 == 0 ? "a" : "b", i)
+              .classification("SEGMENT" + i).build());
+    }
+    assertNull(DecisionDag.compile(schema(), rules, 10));
+    assertNotNull(DecisionDag.compile(schema(), rules, 10_000));
+  }
+
+  @Test
+  public void testRejectsLargeRuleSetsPredictedNotToFit() {
+    Schema<Integer, double[]> schema = Schema.create();
+    for (int column = 0; column < 6; ++column) {
+      int c = column;
+      schema.withAttribute(c, (double[] features) -> features[c]);
+    }
+    Random random = new Random(5);
+    List<MatchingConstraint<Integer, String>> sparse = new ArrayList<>();
+    List<MatchingConstraint<Integer, String>> dense = new ArrayList<>();
+    for (int i = 0; i < 5000; ++i) {
+      MatchingConstraint.Builder<Integer, String> sparseRule = MatchingConstraint.<Integer, String>named("rule" + i);
+      MatchingConstraint.Builder<Integer, String> denseRule = MatchingConstraint.<Integer, String>named("rule" + i);
+      for (int column = 0; column < 6; ++column) {
+        double value = random.nextInt(20) / 2D;
+        if (column == 0 || random.nextInt(10) >= 3) {
+          sparseRule.eq(column, value);
+        }
+        denseRule.eq(column, value);
+      }
+      sparse.add(sparseRule.classification("SEGMENT" + i).build());
+      dense.add(denseRule.classification("SEGMENT" + i).build());
+    }
+    assertNull(DecisionDag.compile(schema, sparse, 16 * sparse.size()));
+    DecisionDag<double[], String> dag = DecisionDag.compile(schema, dense, 16 * dense.size());
+    assertNotNull(dag);
+    Classifier<double[], String> masks = ImmutableClassifier.<Integer, double[], String>builder(schema).build(dense);
+    for (int i = 0; i < 1000; ++i) {
+      double[] input = new double[6];
+      MatchingConstraint<Integer, String> rule = dense.get(random.nextInt(dense.size()));
+      for (int column = 0; column < 6; ++column) {
+        input[column] = rule.getConstraints().get(column).<Double>getValue();
+      }
+      assertEquals(masks.classifications(input).collect(toList()), dag.classifications(input).collect(toList()));
+    }
+  }
+
+  @Test
+  public void testRebuildFromDag() {
+    List<MatchingConstraint<String, String>> rules = Arrays.asList(
+            MatchingConstraint.<String, String>named("rule1").eq("a", 1).classification("RED").build(),
+            MatchingConstraint.<String, String>named("rule2").eq("a", 2).classification("BLUE").build());
+    ImmutableClassifier.ClassifierBuilder<String, TestDomainObject, String> builder =
+            ImmutableClassifier.<String, TestDomainObject, String>builder(schema()).withDecisionDag();
+    ImmutableClassifier<TestDomainObject, String> rebuilt = builder.rebuild(builder.build(rules),
+            Collections.singletonList(MatchingConstraint.<String, String>named("rule1").eq("a", 3).classification("GREEN").build()),
+            Collections.singletonList("rule2"));
+    TestDomainObject value = TestDomainObject.random();
+    assertFalse(rebuilt.classification(value.setMeasure2(1)).isPresent());
+    assertFalse(rebuilt.classification(value.setMeasure2(2)).isPresent());
+    assertEquals("GREEN", rebuilt.classification(value.setMeasure2(3)).orElseThrow(AssertionError::new));
+  }
+
+  private static Schema<String, TestDomainObject> schema() {
+    return Schema.<String, TestDomainObject>create()
+            .withAttribute("a", TestDomainObject::getMeasure2)
+            .withAttribute("b", TestDomainObject::getMeasure3)
+            .withStringAttribute("c", TestDomainObject::getField1);
+  }
+}
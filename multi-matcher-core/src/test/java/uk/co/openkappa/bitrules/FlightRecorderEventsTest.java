@@ -0,0 +1,68 @@
+package uk.co.openkappa.bitrules;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightRecorderEventsTest {
+
+  @Test
+  public void testBuildPhasesAndSampledClassificationsAreRecorded(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("recording.jfr");
+    // nothing is recorded until a recording enables the event
+    assertSame(BuildPhase.IGNORED, BuildPhase.start());
+    try (Recording recording = new Recording()) {
+      recording.enable("uk.co.openkappa.bitrules.BuildPhase");
+      recording.enable("uk.co.openkappa.bitrules.Classification");
+      recording.start();
+      List<MatchingConstraint<Integer, String>> rules = new ArrayList<>();
+      for (int i = 0; i < 100; ++i) {
+        rules.add(MatchingConstraint.<Integer, String>anonymous().eq(0, i).ge(1, i).classification("RULE" + i).build());
+      }
+      ImmutableClassifier<int[], String> classifier = ImmutableClassifier.<Integer, int[], String>builder(
+              Schema.<Integer, int[]>create()
+                      .withAttribute(0, (int[] features) -> features[0])
+                      .withAttribute(1, (int[] features) -> features[1]))
+              .withSampledEvents(10)
+              .build(rules);
+      for (int i = 0; i < 100; ++i) {
+        classifier.classification(new int[]{i, 50});
+      }
+      recording.stop();
+      recording.dump(file);
+    }
+    assertSame(BuildPhase.IGNORED, BuildPhase.start());
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    List<RecordedEvent> phases = events.stream()
+            .filter(event -> event.getEventType().getName().equals("uk.co.openkappa.bitrules.BuildPhase"))
+            .collect(Collectors.toList());
+    assertEquals(3, phases.size());
+    assertEquals("accumulate", phases.get(0).getString("phase"));
+    assertEquals("freeze", phases.get(1).getString("phase"));
+    assertEquals("sort matchers", phases.get(2).getString("phase"));
+    for (RecordedEvent phase : phases) {
+      assertEquals(100, phase.getInt("rules"));
+      assertEquals(2, phase.getInt("attributes"));
+      assertEquals("MediumMask", phase.getString("maskType"));
+    }
+    List<RecordedEvent> classifications = events.stream()
+            .filter(event -> event.getEventType().getName().equals("uk.co.openkappa.bitrules.Classification"))
+            .collect(Collectors.toList());
+    assertEquals(10, classifications.size());
+    for (RecordedEvent classification : classifications) {
+      assertEquals(2, classification.getInt("available"));
+      assertTrue(classification.getInt("matchers") >= 1);
+      assertFalse(classification.getDuration().isNegative());
+    }
+  }
+}
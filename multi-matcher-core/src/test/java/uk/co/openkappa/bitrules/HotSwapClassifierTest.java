@@ -0,0 +1,113 @@
+package uk.co.openkappa.bitrules;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HotSwapClassifierTest {
+
+  @Test
+  public void testReloadSwapsClassifier() {
+    AtomicReference<List<MatchingConstraint<Integer, String>>> rules = new AtomicReference<>(Collections.emptyList());
+    HotSwapClassifier<Integer, int[], String> classifier = new HotSwapClassifier<>(schema(), rules::get, Runnable::run);
+    assertEquals(0, classifier.version());
+    assertFalse(classifier.classification(new int[]{1}).isPresent());
+
+    Instant before = Instant.now();
+    rules.set(Collections.singletonList(rule(1, "ONE")));
+    Classifier<int[], String> first = classifier.reload().join();
+    assertSame(first, classifier.current());
+    assertEquals(1, classifier.version());
+    assertEquals("ONE", classifier.classification(new int[]{1}).orElseThrow(AssertionError::new));
+    assertFalse(classifier.lastSwapTime().isBefore(before));
+    assertFalse(classifier.lastBuildDuration().isNegative());
+
+    rules.set(Collections.singletonList(rule(2, "TWO")));
+    classifier.reload().join();
+    assertEquals(2, classifier.version());
+    assertFalse(classifier.classification(new int[]{1}).isPresent());
+    assertEquals("TWO", classifier.classification(new int[]{2}).orElseThrow(AssertionError::new));
+    // anyone still holding the old version is unaffected
+    assertEquals("ONE", first.classification(new int[]{1}).orElseThrow(AssertionError::new));
+  }
+
+  @Test
+  public void testReloadUsesConfiguredBuilder() {
+    AtomicReference<List<MatchingConstraint<Integer, String>>> rules =
+            new AtomicReference<>(Collections.singletonList(rule(1, "ONE")));
+    HotSwapClassifier<Integer, int[], String> classifier = new HotSwapClassifier<>(
+            () -> ImmutableClassifier.<Integer, int[], String>builder(schema()).withHitCounting(), rules::get, Runnable::run);
+    classifier.reload().join();
+    classifier.classification(new int[]{1});
+    classifier.classification(new int[]{2});
+    ImmutableClassifier<int[], String> first = (ImmutableClassifier<int[], String>) classifier.current();
+    assertEquals(1L, first.bestClassificationHits().get("ONE"));
+
+    rules.set(Collections.singletonList(rule(2, "TWO")));
+    classifier.reload().join();
+    classifier.classification(new int[]{2});
+    ImmutableClassifier<int[], String> second = (ImmutableClassifier<int[], String>) classifier.current();
+    assertNotSame(first, second);
+    assertEquals(1L, second.bestClassificationHits().get("TWO"));
+  }
+
+  @Test
+  public void testFailedReloadKeepsCurrentClassifier() {
+    AtomicReference<List<MatchingConstraint<Integer, String>>> rules =
+            new AtomicReference<>(Collections.singletonList(rule(1, "ONE")));
+    HotSwapClassifier<Integer, int[], String> classifier = new HotSwapClassifier<>(schema(), () -> {
+      if (null == rules.get()) {
+        throw new IOException("unavailable");
+      }
+      return rules.get();
+    }, Runnable::run);
+    classifier.reload().join();
+    rules.set(null);
+    assertThrows(CompletionException.class, () -> classifier.reload().join());
+    assertEquals(1, classifier.version());
+    assertEquals("ONE", classifier.classification(new int[]{1}).orElseThrow(AssertionError::new));
+  }
+
+  @Test
+  public void testReloadsWhenWatchedFileChanges(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("rules.txt");
+    Files.write(file, Collections.singletonList("1"));
+    try (HotSwapClassifier<Integer, int[], String> classifier = new HotSwapClassifier<>(schema(),
+            () -> Files.readAllLines(file).stream()
+                    .filter(line -> !line.isEmpty())
+                    .map(line -> rule(Integer.parseInt(line), "RULE" + line))
+                    .collect(Collectors.toList()),
+            Runnable::run)) {
+      classifier.reload().join();
+      classifier.watch(file);
+      Files.write(file, Collections.singletonList("2"));
+      assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+        while (!classifier.classification(new int[]{2}).isPresent()) {
+          Thread.sleep(10);
+        }
+      });
+      assertEquals("RULE2", classifier.classification(new int[]{2}).orElseThrow(AssertionError::new));
+    }
+  }
+
+  private static MatchingConstraint<Integer, String> rule(int value, String classification) {
+    return MatchingConstraint.<Integer, String>anonymous().eq(0, value).classification(classification).build();
+  }
+
+  private static Schema<Integer, int[]> schema() {
+    return Schema.<Integer, int[]>create().withAttribute(0, (int[] features) -> features[0]);
+  }
+}
@@ -3,13 +3,29 @@ package uk.co.openkappa.bitrules;
 import org.junit.jupiter.api.Test;
 import uk.co.openkappa.bitrules.schema.Schema;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.function.ToIntFunction;
 import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 public class LargeClassifierTest {
@@ -42,6 +58,186 @@ public class LargeClassifierTest {
   }
 
 
+  @Test
+  public void testMediumClassifier() {
+    Classifier<int[], String> classifier = ImmutableClassifier.
+            <Integer, int[], String>builder(Schema.<Integer, int[]>create()
+                    .withAttribute(0, extract(0))
+                    .withAttribute(1, extract(1))
+            ).build(overlappingRules());
+    assertEquals("SEGMENT905", classifier.classification(new int[]{5, 950}).orElseThrow(RuntimeException::new));
+    assertEquals(10, classifier.classifications(new int[]{5, 950}).count());
+    assertFalse(classifier.classification(new int[]{5, 4}).isPresent());
+  }
+
+  @Test
+  public void testBatchClassification() {
+    Classifier<int[], String> classifier = ImmutableClassifier.
+            <Integer, int[], String>builder(Schema.<Integer, int[]>create()
+                    .withAttribute(0, extract(0))
+                    .withAttribute(1, extract(1))
+            ).build(overlappingRules());
+    Random random = new Random(42);
+    List<int[]> batch = IntStream.range(0, 5000)
+            .mapToObj(i -> new int[]{random.nextInt(120), random.nextInt(1100)})
+            .collect(toList());
+    int[] indices = classifier.classifyAll(batch);
+    assertEquals(batch.size(), indices.length);
+    for (int i = 0; i < batch.size(); ++i) {
+      assertEquals(classifier.classificationIndex(batch.get(i)), indices[i]);
+    }
+    List<int[]> smaller = batch.subList(0, 10);
+    assertArrayEquals(Arrays.copyOf(indices, 10), classifier.classifyAll(smaller));
+  }
+
+  @Test
+  public void testParallelClassification() {
+    ImmutableClassifier<int[], String> classifier = ImmutableClassifier.
+            <Integer, int[], String>builder(Schema.<Integer, int[]>create()
+                    .withAttribute(0, extract(0))
+                    .withAttribute(1, extract(1))
+            ).build(overlappingRules());
+    Random random = new Random(42);
+    List<int[]> inputs = IntStream.range(0, 100_000)
+            .mapToObj(i -> new int[]{random.nextInt(120), random.nextInt(1100)})
+            .collect(toList());
+    int[] expected = classifier.classifyAll(inputs);
+    assertArrayEquals(expected, classifier.parallelClassifyAll(inputs));
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      assertArrayEquals(expected, classifier.parallelClassifyAll(inputs.spliterator(), pool, 100));
+    } finally {
+      pool.shutdown();
+    }
+    assertThrows(IllegalArgumentException.class,
+            () -> classifier.parallelClassifyAll(inputs.stream().filter(x -> true).spliterator(), pool, 100));
+  }
+
+  @Test
+  public void testParallelClassificationOfUnsplittableCollections() {
+    ImmutableClassifier<int[], String> classifier = ImmutableClassifier.
+            <Integer, int[], String>builder(Schema.<Integer, int[]>create()
+                    .withAttribute(0, extract(0))
+                    .withAttribute(1, extract(1))
+            ).build(overlappingRules());
+    Random random = new Random(7);
+    Collection<int[]> queue = new ConcurrentLinkedQueue<>();
+    Collection<int[]> set = new HashSet<>();
+    for (int i = 0; i < 10_000; ++i) {
+      int[] input = new int[]{random.nextInt(120), random.nextInt(1100)};
+      queue.add(input);
+      set.add(input);
+    }
+    assertFalse(queue.spliterator().hasCharacteristics(Spliterator.SUBSIZED));
+    assertFalse(set.spliterator().hasCharacteristics(Spliterator.SUBSIZED));
+    assertArrayEquals(classifier.classifyAll(new ArrayList<>(queue)), classifier.parallelClassifyAll(queue));
+    assertArrayEquals(classifier.classifyAll(new ArrayList<>(set)), classifier.parallelClassifyAll(set));
+  }
+
+  @Test
+  public void testAdaptiveMatcherOrdering() {
+    Classifier<int[], String> reference = adaptiveBuilder().build(overlappingRules());
+    ImmutableClassifier<int[], String> adaptive = adaptiveBuilder().withAdaptiveMatcherOrdering(1, 10)
+            .build(overlappingRules());
+    MaskedClassifier<?, int[], String> masked = adaptive.compilation.classifier;
+    Matcher<int[], ?>[] initial = masked.matchers().clone();
+    Random random = new Random(42);
+    for (int i = 0; i < 10_000; ++i) {
+      int[] input = rejectedByRanges(random);
+      assertEquals(reference.classificationIndex(input), adaptive.classificationIndex(input));
+    }
+    // the range attribute empties the context most often, so is moved first
+    assertSame(initial[1], masked.matchers()[0]);
+  }
+
+  @Test
+  public void testAdaptiveMatcherOrderingRespecialisesOnce() throws InterruptedException {
+    Classifier<int[], String> reference = adaptiveBuilder().build(overlappingRules());
+    ImmutableClassifier<int[], String> adaptive = adaptiveBuilder().withAdaptiveMatcherOrdering(1, 10)
+            .withSpecialisation()
+            .build(overlappingRules());
+    MaskedClassifier<?, int[], String> masked = adaptive.compilation.classifier;
+    Matcher<int[], ?>[] initial = masked.matchers().clone();
+    Object first = masked.sequence();
+    Random random = new Random(42);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    // the specialised class is generated in the background, so keep classifying until it's published
+    while (masked.matchers()[0] != initial[1] && System.nanoTime() < deadline) {
+      int[] input = rejectedByRanges(random);
+      assertEquals(reference.classificationIndex(input), adaptive.classificationIndex(input));
+      Thread.sleep(1);
+    }
+    assertSame(initial[1], masked.matchers()[0]);
+    Object reordered = masked.sequence();
+    assertNotSame(first, reordered);
+    for (int i = 0; i < 10_000; ++i) {
+      int[] input = rejectedByRanges(random);
+      assertEquals(reference.classificationIndex(input), adaptive.classificationIndex(input));
+    }
+    // later reorderings leave the order as it is, so no further classes are generated
+    assertSame(reordered, masked.sequence());
+  }
+
+  private static int[] rejectedByRanges(Random random) {
+    return new int[]{random.nextInt(100), random.nextInt(1100) - 1000};
+  }
+
+  private static ImmutableClassifier.ClassifierBuilder<Integer, int[], String> adaptiveBuilder() {
+    return ImmutableClassifier.builder(Schema.<Integer, int[]>create()
+            .withAttribute(0, extract(0))
+            .withAttribute(1, extract(1)));
+  }
+
+  @Test
+  public void testParallelBuild() {
+    Schema<Integer, int[]> schema = Schema.<Integer, int[]>create()
+            .withAttribute(0, extract(0))
+            .withAttribute(1, extract(1))
+            .withAttribute(2, extract(2))
+            .withAttribute(3, extract(3));
+    Random random = new Random(3);
+    List<MatchingConstraint<Integer, String>> rules = IntStream.range(0, 20000)
+            .mapToObj(i -> MatchingConstraint.<Integer, String>anonymous()
+                    .eq(0, random.nextInt(100))
+                    .ge(1, random.nextInt(1000))
+                    .lt(2, random.nextInt(1000))
+                    .neq(3, random.nextInt(10))
+                    .priority(random.nextInt(1000))
+                    .classification("SEGMENT" + i)
+                    .build())
+            .collect(toList());
+    Classifier<int[], String> sequential = ImmutableClassifier.<Integer, int[], String>builder(schema).build(rules);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      Classifier<int[], String> parallel = ImmutableClassifier.<Integer, int[], String>builder(schema).parallel(pool).build(rules);
+      int matched = 0;
+      for (int i = 0; i < 1000; ++i) {
+        int[] input = {random.nextInt(100), random.nextInt(1000), random.nextInt(1000), random.nextInt(10)};
+        List<String> expected = sequential.classifications(input).collect(toList());
+        assertEquals(expected, parallel.classifications(input).collect(toList()));
+        if (!expected.isEmpty()) {
+          ++matched;
+        }
+      }
+      // nearly every input matches some rule, otherwise comparing empty results would prove nothing
+      assertTrue(matched > 900, matched + " of 1000 inputs matched");
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static List<MatchingConstraint<Integer, String>> overlappingRules() {
+    return IntStream.range(0, 1000)
+            .mapToObj(i ->
+                    MatchingConstraint.<Integer, String>anonymous()
+                            .eq(0, i % 100)
+                            .ge(1, i)
+                            .priority(i)
+                            .classification("SEGMENT" + i)
+                            .build())
+            .collect(toList());
+  }
+
   private static ToIntFunction<int[]> extract(int feature) {
     return features -> features[feature];
   }
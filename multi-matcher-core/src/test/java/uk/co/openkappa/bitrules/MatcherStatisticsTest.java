@@ -0,0 +1,32 @@
+package uk.co.openkappa.bitrules;
+
+import org.junit.jupiter.api.Test;
+import uk.co.openkappa.bitrules.masks.TinyMask;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatcherStatisticsTest {
+
+  @Test
+  public void testMatchersWhichEmptyTheContextMoveToTheFront() {
+    Matcher<Integer, TinyMask> keepsAll = (value, context, scratch) -> context;
+    Matcher<Integer, TinyMask> keepsHalf = (value, context, scratch) -> context.inPlaceAnd(TinyMask.FACTORY.contiguous(5));
+    Matcher<Integer, TinyMask> keepsNone = (value, context, scratch) -> context.inPlaceAnd(TinyMask.FACTORY.empty());
+    MatcherStatistics<Integer, TinyMask> statistics = new MatcherStatistics<>(new Matcher[]{keepsAll, keepsHalf, keepsNone}, 1, 2);
+    TinyMask all = TinyMask.FACTORY.contiguous(10);
+    for (int i = 0; i < statistics.matchers.length; ++i) {
+      statistics.record(i, statistics.matchers[i].match(0, all.clone()).cardinality(), 10);
+    }
+    assertFalse(statistics.sampled());
+    assertTrue(statistics.sampled());
+    assertArrayEquals(new Matcher[]{keepsNone, keepsHalf, keepsAll}, statistics.reorder());
+  }
+
+  @Test
+  public void testOrderIsStableWithoutSamples() {
+    Matcher<Integer, TinyMask> first = (value, context, scratch) -> context;
+    Matcher<Integer, TinyMask> second = (value, context, scratch) -> context;
+    MatcherStatistics<Integer, TinyMask> statistics = new MatcherStatistics<>(new Matcher[]{first, second}, 1, 1);
+    assertArrayEquals(new Matcher[]{first, second}, statistics.reorder());
+  }
+}
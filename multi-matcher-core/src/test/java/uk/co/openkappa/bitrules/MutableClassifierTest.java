@@ -0,0 +1,78 @@
+package uk.co.openkappa.bitrules;
+
+import org.junit.jupiter.api.Test;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MutableClassifierTest {
+
+  @Test
+  public void testAddAndRemove() {
+    MutableClassifier<Integer, int[], String> classifier = new MutableClassifier<>(schema());
+    assertFalse(classifier.classification(new int[]{1, 1}).isPresent());
+    int red = classifier.add(MatchingConstraint.<Integer, String>named("red").eq(0, 1).priority(0).classification("RED").build());
+    int blue = classifier.add(MatchingConstraint.<Integer, String>named("blue").eq(1, 1).priority(1).classification("BLUE").build());
+    assertEquals("BLUE", classifier.classification(new int[]{1, 1}).orElseThrow(AssertionError::new));
+    assertEquals(Arrays.asList("BLUE", "RED"), classifier.classifications(new int[]{1, 1}).collect(toList()));
+    assertEquals(blue, classifier.classificationIndex(new int[]{1, 1}));
+    assertTrue(classifier.remove(blue));
+    assertFalse(classifier.remove(blue));
+    assertEquals("RED", classifier.classification(new int[]{1, 1}).orElseThrow(AssertionError::new));
+    assertEquals(red, classifier.classificationIndex(new int[]{1, 1}));
+    int green = classifier.add(MatchingConstraint.<Integer, String>named("green").eq(0, 1).priority(2).classification("GREEN").build());
+    assertEquals(blue, green, "freed ids should be reused");
+    assertEquals("GREEN", classifier.classificationAt(classifier.classificationIndex(new int[]{1, 0})));
+    assertEquals(2, classifier.size());
+  }
+
+  @Test
+  public void testMatchesRebuiltClassifierThroughCompactions() {
+    Random random = new Random(7);
+    MutableClassifier<Integer, int[], String> classifier = new MutableClassifier<>(schema(), 20);
+    Map<Integer, MatchingConstraint<Integer, String>> live = new LinkedHashMap<>();
+    List<int[]> inputs = new ArrayList<>();
+    for (int i = 0; i < 200; ++i) {
+      inputs.add(new int[]{random.nextInt(10), random.nextInt(100)});
+    }
+    for (int step = 0; step < 500; ++step) {
+      if (!live.isEmpty() && random.nextInt(3) == 0) {
+        List<Integer> ids = new ArrayList<>(live.keySet());
+        int id = ids.get(random.nextInt(ids.size()));
+        assertTrue(classifier.remove(id));
+        live.remove(id);
+      } else {
+        MatchingConstraint<Integer, String> rule = MatchingConstraint.<Integer, String>named("rule" + step)
+                .eq(0, random.nextInt(10))
+                .ge(1, random.nextInt(100))
+                .priority(random.nextInt(5))
+                .classification("rule" + step)
+                .build();
+        live.put(classifier.add(rule), rule);
+      }
+      if (step % 25 == 0) {
+        Classifier<int[], String> expected = ImmutableClassifier.<Integer, int[], String>builder(schema())
+                .build(new ArrayList<>(live.values()));
+        for (int[] input : inputs) {
+          assertEquals(expected.classification(input), classifier.classification(input));
+          assertEquals(expected.classifications(input).collect(toList()), classifier.classifications(input).collect(toList()));
+        }
+      }
+    }
+    assertEquals(live.size(), classifier.size());
+  }
+
+  private static Schema<Integer, int[]> schema() {
+    return Schema.<Integer, int[]>create()
+            .withAttribute(0, extract(0))
+            .withAttribute(1, extract(1));
+  }
+
+  private static ToIntFunction<int[]> extract(int feature) {
+    return features -> features[feature];
+  }
+}
@@ -0,0 +1,92 @@
+package uk.co.openkappa.bitrules;
+
+import org.junit.jupiter.api.Test;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PartitionedClassifierTest {
+
+  @Test
+  public void testPartitionedClassifierMatchesUnpartitioned() {
+    List<MatchingConstraint<Integer, String>> rules = rules(500);
+    Classifier<int[], String> expected = ImmutableClassifier.<Integer, int[], String>builder(schema()).build(rules);
+    Classifier<int[], String> partitioned = ImmutableClassifier.<Integer, int[], String>builder(schema())
+            .partitionBy(0)
+            .build(rules);
+    assertSameClassifications(expected, partitioned);
+  }
+
+  @Test
+  public void testRebuildKeepsPartitioning() {
+    List<MatchingConstraint<Integer, String>> rules = rules(200);
+    ImmutableClassifier<int[], String> previous = ImmutableClassifier.<Integer, int[], String>builder(schema())
+            .partitionBy(0)
+            .build(rules);
+    MatchingConstraint<Integer, String> modified = MatchingConstraint.<Integer, String>named("rule3")
+            .eq(0, 99)
+            .priority(100)
+            .classification("MODIFIED")
+            .build();
+    ImmutableClassifier<int[], String> rebuilt = ImmutableClassifier.<Integer, int[], String>builder(schema())
+            .partitionBy(0)
+            .rebuild(previous, Collections.singletonList(modified), Collections.singletonList("rule4"));
+    rules.set(3, modified);
+    rules.remove(4);
+    assertSameClassifications(ImmutableClassifier.<Integer, int[], String>builder(schema()).build(rules), rebuilt);
+    assertEquals("MODIFIED", rebuilt.classification(new int[]{99, 0, 0}).orElseThrow(AssertionError::new));
+  }
+
+  private static void assertSameClassifications(Classifier<int[], String> expected, Classifier<int[], String> actual) {
+    Random random = new Random(1);
+    for (int i = 0; i < 2000; ++i) {
+      int[] input = {random.nextInt(25), random.nextInt(10), random.nextInt(10)};
+      assertEquals(expected.classificationIndex(input), actual.classificationIndex(input));
+      assertEquals(expected.classification(input), actual.classification(input));
+      assertEquals(expected.classifications(input).collect(toList()), actual.classifications(input).collect(toList()));
+    }
+  }
+
+  private static List<MatchingConstraint<Integer, String>> rules(int count) {
+    Random random = new Random(0);
+    List<MatchingConstraint<Integer, String>> rules = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      MatchingConstraint.Builder<Integer, String> rule = MatchingConstraint.<Integer, String>named("rule" + i)
+              .priority(random.nextInt(50))
+              .classification("rule" + i);
+      switch (random.nextInt(4)) {
+        case 0:
+          // fallback, unconstrained on the partition attribute
+          rule.ge(1, random.nextInt(10));
+          break;
+        case 1:
+          // fallback, not an equality constraint
+          rule.neq(0, random.nextInt(20)).le(2, random.nextInt(10));
+          break;
+        case 2:
+          // only constrains the partition attribute
+          rule.eq(0, random.nextInt(20));
+          break;
+        default:
+          rule.eq(0, random.nextInt(20)).ge(1, random.nextInt(10)).eq(2, random.nextInt(10));
+      }
+      rules.add(rule.build());
+    }
+    return rules;
+  }
+
+  private static Schema<Integer, int[]> schema() {
+    return Schema.<Integer, int[]>create()
+            .withAttribute(0, extract(0))
+            .withAttribute(1, extract(1))
+            .withAttribute(2, extract(2));
+  }
+
+  private static ToIntFunction<int[]> extract(int feature) {
+    return features -> features[feature];
+  }
+}
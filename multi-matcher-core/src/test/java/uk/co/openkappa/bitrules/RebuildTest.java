@@ -0,0 +1,88 @@
+package uk.co.openkappa.bitrules;
+
+import org.junit.jupiter.api.Test;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.util.*;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RebuildTest {
+
+  @Test
+  public void testModifyOneAttribute() {
+    List<MatchingConstraint<Integer, String>> rules = rules(200);
+    ImmutableClassifier<int[], String> previous = builder().build(rules);
+    MatchingConstraint<Integer, String> modified = rule(17, 3, 50, rules.get(17).getPriority(), "MODIFIED");
+    ImmutableClassifier<int[], String> rebuilt = builder().rebuild(previous, Collections.singletonList(modified), Collections.emptyList());
+    rules.set(17, modified);
+    assertSameClassifications(builder().build(rules), rebuilt);
+  }
+
+  @Test
+  public void testRemoveAndModify() {
+    List<MatchingConstraint<Integer, String>> rules = rules(200);
+    ImmutableClassifier<int[], String> previous = builder().build(rules);
+    MatchingConstraint<Integer, String> modified = MatchingConstraint.<Integer, String>named("rule5")
+            .eq(0, 1).priority(rules.get(5).getPriority()).classification("ONLY_ATTRIBUTE_0").build();
+    ImmutableClassifier<int[], String> rebuilt = builder().rebuild(previous,
+            Collections.singletonList(modified), Arrays.asList("rule10", "rule11"));
+    rules.set(5, modified);
+    rules.removeIf(rule -> rule.getId().equals("rule10") || rule.getId().equals("rule11"));
+    ImmutableClassifier<int[], String> expected = builder().build(rules);
+    assertSameClassifications(expected, rebuilt);
+
+    // and again from the partially masked classifier
+    ImmutableClassifier<int[], String> again = builder().rebuild(rebuilt, Collections.emptyList(), Collections.singletonList("rule12"));
+    rules.removeIf(rule -> rule.getId().equals("rule12"));
+    assertSameClassifications(builder().build(rules), again);
+  }
+
+  @Test
+  public void testAddAndReprioritiseFallBackToFullRebuild() {
+    List<MatchingConstraint<Integer, String>> rules = rules(100);
+    ImmutableClassifier<int[], String> previous = builder().build(rules);
+    MatchingConstraint<Integer, String> added = rule(1000, 2, 10, 500, "ADDED");
+    MatchingConstraint<Integer, String> reprioritised = rule(3, 3, 3, 1000, "REPRIORITISED");
+    ImmutableClassifier<int[], String> rebuilt = builder().rebuild(previous, Arrays.asList(added, reprioritised),
+            Collections.singletonList("rule4"));
+    rules.set(3, reprioritised);
+    rules.remove(4);
+    rules.add(added);
+    assertSameClassifications(builder().build(rules), rebuilt);
+  }
+
+  private static void assertSameClassifications(Classifier<int[], String> expected, Classifier<int[], String> actual) {
+    for (int a = 0; a < 12; ++a) {
+      for (int b = 0; b < 120; b += 3) {
+        int[] input = {a, b};
+        assertEquals(expected.classifications(input).collect(toList()), actual.classifications(input).collect(toList()));
+      }
+    }
+  }
+
+  private static List<MatchingConstraint<Integer, String>> rules(int count) {
+    Random random = new Random(0);
+    List<MatchingConstraint<Integer, String>> rules = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      rules.add(rule(i, random.nextInt(10), random.nextInt(100), random.nextInt(20), "SEGMENT" + i));
+    }
+    return rules;
+  }
+
+  private static MatchingConstraint<Integer, String> rule(int id, int eq, int ge, int priority, String classification) {
+    return MatchingConstraint.<Integer, String>named("rule" + id)
+            .eq(0, eq)
+            .ge(1, ge)
+            .priority(priority)
+            .classification(classification)
+            .build();
+  }
+
+  private static ImmutableClassifier.ClassifierBuilder<Integer, int[], String> builder() {
+    return ImmutableClassifier.builder(Schema.<Integer, int[]>create()
+            .withAttribute(0, (int[] features) -> features[0])
+            .withAttribute(1, (int[] features) -> features[1]));
+  }
+}
@@ -0,0 +1,133 @@
+package uk.co.openkappa.bitrules;
+
+import org.junit.jupiter.api.Test;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RuleHitsTest {
+
+  @Test
+  public void testCountsMatchesAndBestClassifications() throws Exception {
+    List<MatchingConstraint<Integer, String>> rules = Arrays.asList(
+            rule("low", 0, 10, 2, "SMALL"),
+            rule("mid", 0, 50, 1, "MEDIUM"),
+            rule("any", 1, 0, 0, "ANYTHING"));
+    ImmutableClassifier<int[], String> classifier = builder().withHitCounting().build(rules);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; ++t) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 100; ++i) {
+            classifier.classification(new int[]{i, 0});
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    Map<String, Long> hits = classifier.ruleHits();
+    assertEquals(40L, hits.get("low"));
+    assertEquals(200L, hits.get("mid"));
+    assertEquals(400L, hits.get("any"));
+    Map<String, Long> best = classifier.bestClassificationHits();
+    assertEquals(40L, best.get("SMALL"));
+    assertEquals(160L, best.get("MEDIUM"));
+    assertEquals(200L, best.get("ANYTHING"));
+
+    classifier.resetHits();
+    assertEquals(0L, classifier.ruleHits().get("any"));
+    assertTrue(classifier.bestClassificationHits().isEmpty());
+    classifier.classifyAll(Arrays.asList(new int[]{5, 0}, new int[]{70, 0}), new int[2]);
+    assertEquals(1L, classifier.ruleHits().get("low"));
+    assertEquals(2L, classifier.ruleHits().get("any"));
+    assertEquals(1L, classifier.bestClassificationHits().get("ANYTHING"));
+  }
+
+  @Test
+  public void testStreamedAndSpecialisedClassifiersCountByRuleId() throws Exception {
+    List<MatchingConstraint<Integer, String>> rules = Arrays.asList(
+            rule("low", 0, 10, 0, "SMALL"),
+            rule("mid", 0, 50, 1, "MEDIUM"));
+    StreamingRuleSet<Integer, String> ruleSet = new StreamingRuleSet<Integer, String>() {
+      @Override
+      public Stream<MatchingConstraint<Integer, String>> stream() {
+        return rules.stream();
+      }
+
+      @Override
+      public Optional<MatchingConstraint<Integer, String>> specification(String ruleId) {
+        return rules.stream().filter(rule -> rule.getId().equals(ruleId)).findFirst();
+      }
+    };
+    ImmutableClassifier<int[], String> classifier = builder().withHitCounting().withSpecialisation().build(ruleSet);
+    classifier.classification(new int[]{5, 0});
+    classifier.classification(new int[]{20, 0});
+    assertEquals(1L, classifier.ruleHits().get("low"));
+    assertEquals(2L, classifier.ruleHits().get("mid"));
+    assertEquals(2L, classifier.bestClassificationHits().get("MEDIUM"));
+  }
+
+  @Test
+  public void testShortLivedThreadsShareBoundedStripes() throws Exception {
+    List<MatchingConstraint<Integer, String>> rules = Arrays.asList(
+            rule("low", 0, 10, 1, "SMALL"),
+            rule("any", 1, 0, 0, "ANYTHING"));
+    ImmutableClassifier<int[], String> classifier = builder().withHitCounting().build(rules);
+    for (int batch = 0; batch < 50; ++batch) {
+      List<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < 20; ++t) {
+        Thread thread = new Thread(() -> {
+          for (int i = 0; i < 20; ++i) {
+            classifier.classification(new int[]{i, 0});
+          }
+        });
+        thread.start();
+        threads.add(thread);
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+    assertEquals(10_000L, classifier.ruleHits().get("low"));
+    assertEquals(20_000L, classifier.ruleHits().get("any"));
+    assertEquals(10_000L, classifier.bestClassificationHits().get("SMALL"));
+    assertEquals(10_000L, classifier.bestClassificationHits().get("ANYTHING"));
+    RuleHits hits = new RuleHits(1);
+    for (int i = 0; i < 1000; ++i) {
+      hits.stripe();
+    }
+    assertTrue(hits.stripes() <= 4 * Runtime.getRuntime().availableProcessors());
+  }
+
+  @Test
+  public void testHitsUnavailableUnlessCounted() {
+    ImmutableClassifier<int[], String> classifier = builder().build(
+            Collections.singletonList(rule("low", 0, 10, 0, "SMALL")));
+    assertThrows(IllegalStateException.class, classifier::ruleHits);
+  }
+
+  private static MatchingConstraint<Integer, String> rule(String id, int attribute, int threshold, int priority, String classification) {
+    MatchingConstraint.Builder<Integer, String> rule = MatchingConstraint.<Integer, String>named(id)
+            .priority(priority)
+            .classification(classification);
+    return (attribute == 0 ? rule.lt(0, threshold) : rule.ge(1, threshold)).build();
+  }
+
+  private static ImmutableClassifier.ClassifierBuilder<Integer, int[], String> builder() {
+    return ImmutableClassifier.builder(Schema.<Integer, int[]>create()
+            .withAttribute(0, (int[] features) -> features[0])
+            .withAttribute(1, (int[] features) -> features[1]));
+  }
+}
@@ -0,0 +1,117 @@
+package uk.co.openkappa.bitrules;
+
+import org.junit.jupiter.api.Test;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingRuleSetTest {
+
+  @Test
+  public void testStreamedBuildMatchesListBuild() throws IOException {
+    for (int count : new int[]{50, 1000, 5000}) {
+      GeneratedRules rules = new GeneratedRules(count);
+      Classifier<int[], String> expected = builder().build(rules.constraints());
+      int passes = rules.passes.get();
+      Classifier<int[], String> streamed = builder().build(rules);
+      assertEquals(passes + 2, rules.passes.get());
+      assertSameClassifications(expected, streamed);
+    }
+  }
+
+  @Test
+  public void testRebuildStreamedClassifier() throws IOException {
+    GeneratedRules rules = new GeneratedRules(200);
+    ImmutableClassifier<int[], String> previous = builder().build(rules);
+    MatchingConstraint<Integer, String> modified = MatchingConstraint.<Integer, String>named("rule7")
+            .eq(0, 3)
+            .priority(rules.rule(7).getPriority())
+            .classification("MODIFIED")
+            .build();
+    ImmutableClassifier<int[], String> rebuilt = builder().rebuild(previous,
+            Collections.singletonList(modified), Collections.singletonList("rule8"));
+    List<MatchingConstraint<Integer, String>> expected = rules.constraints();
+    expected.set(7, modified);
+    expected.remove(8);
+    assertSameClassifications(builder().build(expected), rebuilt);
+  }
+
+  @Test
+  public void testSpecificationUsesIndex() throws IOException {
+    GeneratedRules rules = new GeneratedRules(100);
+    assertEquals("rule42", rules.specification("rule42").map(MatchingConstraint::getId).orElseThrow(AssertionError::new));
+    assertFalse(rules.specification("rule100").isPresent());
+    assertEquals(0, rules.passes.get());
+  }
+
+  @Test
+  public void testRuleSetChangingBetweenPassesIsDetected() {
+    GeneratedRules rules = new GeneratedRules(100) {
+      @Override
+      public Stream<MatchingConstraint<Integer, String>> stream() {
+        return super.stream().limit(passes.get() == 1 ? 50 : 100);
+      }
+    };
+    assertThrows(IllegalStateException.class, () -> builder().build(rules));
+  }
+
+  private static void assertSameClassifications(Classifier<int[], String> expected, Classifier<int[], String> actual) {
+    Random random = new Random(1);
+    for (int i = 0; i < 2000; ++i) {
+      int[] input = {random.nextInt(10), random.nextInt(100)};
+      assertEquals(expected.classificationIndex(input), actual.classificationIndex(input));
+      assertEquals(expected.classifications(input).collect(toList()), actual.classifications(input).collect(toList()));
+    }
+  }
+
+  private static ImmutableClassifier.ClassifierBuilder<Integer, int[], String> builder() {
+    return ImmutableClassifier.builder(Schema.<Integer, int[]>create()
+            .withAttribute(0, (int[] features) -> features[0])
+            .withAttribute(1, (int[] features) -> features[1]));
+  }
+
+  /**
+   * Generates each rule on demand, as if reading them from a file, and indexes them by id
+   */
+  private static class GeneratedRules implements StreamingRuleSet<Integer, String> {
+
+    final AtomicInteger passes = new AtomicInteger();
+    private final int count;
+
+    GeneratedRules(int count) {
+      this.count = count;
+    }
+
+    @Override
+    public Stream<MatchingConstraint<Integer, String>> stream() {
+      passes.incrementAndGet();
+      return IntStream.range(0, count).mapToObj(this::rule);
+    }
+
+    @Override
+    public Optional<MatchingConstraint<Integer, String>> specification(String ruleId) {
+      if (!ruleId.startsWith("rule")) {
+        return Optional.empty();
+      }
+      int id = Integer.parseInt(ruleId.substring(4));
+      return id < count ? Optional.of(rule(id)) : Optional.empty();
+    }
+
+    MatchingConstraint<Integer, String> rule(int id) {
+      Random random = new Random(id);
+      return MatchingConstraint.<Integer, String>named("rule" + id)
+              .eq(0, random.nextInt(10))
+              .ge(1, random.nextInt(100))
+              .priority(random.nextInt(20))
+              .classification("SEGMENT" + id)
+              .build();
+    }
+  }
+}
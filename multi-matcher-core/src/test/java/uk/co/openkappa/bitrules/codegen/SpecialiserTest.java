@@ -0,0 +1,66 @@
+package uk.co.openkappa.bitrules.codegen;
+
+import org.junit.jupiter.api.Test;
+import uk.co.openkappa.bitrules.Classifier;
+import uk.co.openkappa.bitrules.ImmutableClassifier;
+import uk.co.openkappa.bitrules.MatchingConstraint;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToIntFunction;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+public class SpecialiserTest {
+
+  @Test
+  public void testSpecialisedClassifierMatchesGeneric() {
+    for (int attributes : new int[]{1, 3, 8, 12}) {
+      Random random = new Random(attributes);
+      List<MatchingConstraint<Integer, String>> rules = new ArrayList<>();
+      for (int i = 0; i < 100; ++i) {
+        MatchingConstraint.Builder<Integer, String> rule = MatchingConstraint.<Integer, String>anonymous()
+                .priority(random.nextInt(10))
+                .classification("rule" + i);
+        for (int a = 0; a < attributes; ++a) {
+          if (a == i % attributes || random.nextBoolean()) {
+            rule = random.nextBoolean() ? rule.eq(a, random.nextInt(3)) : rule.le(a, random.nextInt(3));
+          }
+        }
+        rules.add(rule.build());
+      }
+      Classifier<int[], String> generic = ImmutableClassifier.<Integer, int[], String>builder(schema(attributes)).build(rules);
+      Classifier<int[], String> specialised = ImmutableClassifier.<Integer, int[], String>builder(schema(attributes))
+              .withSpecialisation()
+              .build(rules);
+      for (int i = 0; i < 500; ++i) {
+        int[] input = random.ints(attributes, 0, 3).toArray();
+        assertEquals(generic.classifications(input).collect(toList()), specialised.classifications(input).collect(toList()));
+      }
+    }
+  }
+
+  @Test
+  public void testEachSequenceGetsItsOwnClass() {
+    MatcherSequence<?, ?> first = Specialiser.specialise(new uk.co.openkappa.bitrules.Matcher[0]);
+    MatcherSequence<?, ?> second = Specialiser.specialise(new uk.co.openkappa.bitrules.Matcher[0]);
+    assertNotSame(first.getClass(), second.getClass());
+    assertNotSame(UnrolledSequence.class, first.getClass());
+  }
+
+  private static Schema<Integer, int[]> schema(int attributes) {
+    Schema<Integer, int[]> schema = Schema.create();
+    for (int a = 0; a < attributes; ++a) {
+      schema.withAttribute(a, extract(a));
+    }
+    return schema;
+  }
+
+  private static ToIntFunction<int[]> extract(int feature) {
+    return features -> features[feature];
+  }
+}
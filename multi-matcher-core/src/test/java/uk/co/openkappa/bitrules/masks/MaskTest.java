@@ -1,10 +1,13 @@
 package uk.co.openkappa.bitrules.masks;
 
 import org.junit.jupiter.api.Test;
+import uk.co.openkappa.bitrules.Mask;
 import uk.co.openkappa.bitrules.masks.HugeMask;
 import uk.co.openkappa.bitrules.masks.SmallMask;
 import uk.co.openkappa.bitrules.masks.TinyMask;
 
+import java.util.stream.IntStream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class MaskTest {
@@ -59,6 +62,108 @@ class MaskTest {
     assertEquals(SmallMask.FACTORY.contiguous(100).or(SmallMask.FACTORY.of(101, 102)), SmallMask.FACTORY.contiguous(100).inPlaceOr(SmallMask.FACTORY.of(101, 102)));
   }
 
+  @Test
+  public void testSmallMaskReset() {
+    SmallMask dense = SmallMask.FACTORY.empty();
+    SmallMask evens = SmallMask.FACTORY.empty();
+    for (int i = 0; i < 20000; ++i) {
+      if (i % 3 != 0) {
+        dense.add(i);
+      }
+      if (i % 2 == 0) {
+        evens.add(i);
+      }
+    }
+    SmallMask sparse = SmallMask.FACTORY.of(2, 3, 4, 6000, 6001);
+    SmallMask range = SmallMask.FACTORY.contiguous(10000);
+    SmallMask context = SmallMask.FACTORY.empty();
+    SmallMask temp = SmallMask.FACTORY.empty();
+    for (int i = 0; i < 3; ++i) {
+      assertEquals(dense.and(evens), context.resetTo(dense).inPlaceAnd(temp.resetTo(evens)));
+      assertEquals(dense.and(evens).and(sparse), context.inPlaceAnd(sparse));
+      assertEquals(range.and(dense.and(evens).and(sparse)), context.inPlaceAnd(range));
+      assertEquals(sparse.or(range), temp.resetTo(sparse).inPlaceOr(range));
+      assertEquals(range.and(dense).and(evens.or(sparse)),
+              context.resetTo(range).inPlaceAnd(dense).inPlaceAnd(temp.resetTo(sparse).inPlaceOr(evens)));
+      assertTrue(context.inPlaceAnd(SmallMask.FACTORY.empty()).isEmpty());
+    }
+  }
+
+  @Test
+  public void testReset() {
+    assertEquals(TinyMask.FACTORY.of(1, 2), TinyMask.FACTORY.contiguous(10).resetTo(TinyMask.FACTORY.of(1, 2)));
+    assertEquals(HugeMask.FACTORY.of(1, 2), HugeMask.FACTORY.contiguous(1 << 20).resetTo(HugeMask.FACTORY.of(1, 2)));
+    MaskFactory<MediumMask> factory = MediumMask.factory(1 << 11);
+    assertEquals(factory.of(1, 2), factory.contiguous(1 << 11).resetTo(factory.of(1, 2)));
+  }
+
+  @Test
+  public void testForEach() {
+    assertForEachMatchesStream(TinyMask.FACTORY.of(0, 3, 63));
+    assertForEachMatchesStream(MediumMask.factory(1 << 11).of(0, 63, 64, 1000, 2047));
+    assertForEachMatchesStream(SmallMask.FACTORY.of(0, 63, 64, 1000, 65535));
+    assertForEachMatchesStream(SmallMask.FACTORY.contiguous(10000));
+    assertForEachMatchesStream(HugeMask.FACTORY.of(0, 1 << 16, 1 << 20));
+    assertForEachMatchesStream(HugeMask.FACTORY.of());
+  }
+
+  @Test
+  public void testIsSubsetOf() {
+    assertSubsetRelations(TinyMask.FACTORY, 1, 3, 63);
+    assertSubsetRelations(MediumMask.factory(1 << 11), 1, 1000, 2047);
+    assertSubsetRelations(SmallMask.FACTORY, 1, 1000, 65535);
+    assertSubsetRelations(HugeMask.FACTORY, 1, 1 << 16, 1 << 20);
+  }
+
+  private static <MaskType extends Mask<MaskType>> void assertSubsetRelations(MaskFactory<MaskType> factory, int... ids) {
+    MaskType all = factory.of(ids);
+    MaskType some = factory.of(ids[0], ids[2]);
+    assertTrue(some.isSubsetOf(all));
+    assertTrue(all.isSubsetOf(all));
+    assertTrue(factory.of().isSubsetOf(some));
+    assertFalse(all.isSubsetOf(some));
+    assertFalse(factory.of(ids[1]).isSubsetOf(some));
+    assertFalse(some.isSubsetOf(factory.of()));
+  }
+
+  private static <MaskType extends Mask<MaskType>> void assertForEachMatchesStream(MaskType mask) {
+    IntStream.Builder builder = IntStream.builder();
+    mask.forEach(builder::add);
+    assertArrayEquals(mask.stream().toArray(), builder.build().toArray());
+  }
+
+  @Test
+  public void testMediumMask() {
+    MaskFactory<MediumMask> factory = MediumMask.factory(1 << 11);
+    MediumMask range = factory.contiguous(1 << 10);
+    MediumMask set = factory.of(1, 1 << 9);
+    assertEquals(set, range.and(set));
+    assertEquals(range, range.or(set));
+    assertEquals(factory.of(), set.andNot(range));
+    assertEquals(factory.contiguous(100), factory.of().orNot(factory.of(), 100));
+    assertEquals(factory.contiguous(1 << 10), factory.contiguous(70).orNot(factory.contiguous(70), 1 << 10));
+    assertTrue(factory.of().isEmpty());
+    assertFalse(factory.contiguous(1).isEmpty());
+    assertEquals(1 << 9, factory.of(1 << 9, 1 << 10).first());
+  }
+
+  @Test
+  public void testStreamMediumMask() {
+    MaskFactory<MediumMask> factory = MediumMask.factory(1 << 11);
+    assertEquals(1 << 10, factory.contiguous(1 << 10).stream().count());
+    assertEquals(1 << 10, factory.contiguous(1 << 10).stream().distinct().count());
+    assertEquals((1 << 10) - 2, factory.contiguous(1 << 10).andNot(factory.of(1, 2)).stream().count());
+    assertArrayEquals(new int[] {0, 63, 64, 1000}, factory.of(1000, 64, 63, 0).stream().toArray());
+  }
+
+  @Test
+  public void testMediumMaskInPlace() {
+    MaskFactory<MediumMask> factory = MediumMask.factory(1 << 11);
+    assertEquals(factory.contiguous(1 << 10).and(factory.of(1, 2)), factory.contiguous(1 << 10).inPlaceAnd(factory.of(1, 2)));
+    assertEquals(factory.contiguous(100).or(factory.of(101, 102)), factory.contiguous(100).inPlaceOr(factory.of(101, 102)));
+    assertEquals(factory.of(3, 99), factory.contiguous(100).inPlaceAndNot(factory.contiguous(99)).inPlaceOr(factory.of(3)));
+  }
+
   @Test
   public void testHugeMask() {
     HugeMask range = HugeMask.FACTORY.contiguous(1 << 22);
@@ -45,6 +45,25 @@ public class ComparableMutableNodeTest {
     assertEquals(mask.andNot(ZERO_OR_ONE), node.match(LocalDate.ofEpochDay(10)));
   }
 
+  @Test
+  public void testGreaterThanOrEqualBetweenThresholds() {
+    ComparableNode<LocalDate, SmallMask> node = build(100, Operation.GE);
+    assertTrue(node.match(LocalDate.ofEpochDay(-1)).isEmpty());
+    assertEquals(ZERO, node.match(LocalDate.ofEpochDay(0)));
+    assertEquals(ZERO, node.match(LocalDate.ofEpochDay(5)));
+    assertEquals(ZERO_OR_ONE, node.match(LocalDate.ofEpochDay(15)));
+  }
+
+  @Test
+  public void testLessThanOrEqualBetweenThresholds() {
+    ComparableNode<LocalDate, SmallMask> node = build(100, Operation.LE);
+    SmallMask mask = FACTORY.contiguous(100);
+    assertTrue(node.match(LocalDate.ofEpochDay(991)).isEmpty());
+    assertEquals(mask, node.match(LocalDate.ofEpochDay(0)));
+    assertEquals(mask.andNot(ZERO), node.match(LocalDate.ofEpochDay(5)));
+    assertEquals(mask.andNot(ZERO_OR_ONE), node.match(LocalDate.ofEpochDay(15)));
+  }
+
   @Test
   public void testGreaterThanRev() {
     ComparableNode<LocalDate, SmallMask> node = buildRev(100, Operation.GT);
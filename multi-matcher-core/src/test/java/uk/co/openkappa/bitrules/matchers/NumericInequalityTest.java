@@ -0,0 +1,67 @@
+package uk.co.openkappa.bitrules.matchers;
+
+import org.junit.jupiter.api.Test;
+import uk.co.openkappa.bitrules.ConstraintAccumulator;
+import uk.co.openkappa.bitrules.ImmutableClassifier;
+import uk.co.openkappa.bitrules.Matcher;
+import uk.co.openkappa.bitrules.MatchingConstraint;
+import uk.co.openkappa.bitrules.masks.TinyMask;
+import uk.co.openkappa.bitrules.schema.Schema;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static uk.co.openkappa.bitrules.Constraint.*;
+import static uk.co.openkappa.bitrules.masks.TinyMask.FACTORY;
+
+public class NumericInequalityTest {
+
+  @Test
+  public void testIntMatcher() {
+    assertInequality(new IntMatcher<Integer, TinyMask>(Integer::intValue, FACTORY, 5), i -> i);
+  }
+
+  @Test
+  public void testLongMatcher() {
+    assertInequality(new LongMatcher<Long, TinyMask>(Long::longValue, FACTORY, 5), i -> (long) i);
+  }
+
+  @Test
+  public void testDoubleMatcher() {
+    assertInequality(new DoubleMatcher<Double, TinyMask>(Double::doubleValue, FACTORY, 5), i -> (double) i);
+  }
+
+  @Test
+  public void testClassifierWithInequalities() {
+    assertClassifications(Schema.<String, Integer>create().withAttribute("x", (Integer x) -> x), i -> i);
+    assertClassifications(Schema.<String, Long>create().withAttribute("x", (Long x) -> x), i -> (long) i);
+    assertClassifications(Schema.<String, Double>create().withAttribute("x", (Double x) -> x), i -> (double) i);
+  }
+
+  private static <T extends Number & Comparable<T>> void assertInequality(ConstraintAccumulator<T, TinyMask> accumulator,
+                                                                         Function<Integer, T> value) {
+    accumulator.addConstraint(notEqualTo(value.apply(5)), 0);
+    accumulator.addConstraint(equalTo(value.apply(5)), 1);
+    accumulator.addConstraint(notEqualTo(value.apply(7)), 2);
+    accumulator.addConstraint(greaterThan(value.apply(4)), 3);
+    // rule 4 is unconstrained
+    Matcher<T, TinyMask> matcher = accumulator.freeze();
+    assertEquals(FACTORY.of(0, 2, 4), matcher.match(value.apply(3), FACTORY.contiguous(5)));
+    assertEquals(FACTORY.of(1, 2, 3, 4), matcher.match(value.apply(5), FACTORY.contiguous(5)));
+    assertEquals(FACTORY.of(0, 3, 4), matcher.match(value.apply(7), FACTORY.contiguous(5)));
+    assertEquals(FACTORY.of(2), matcher.match(value.apply(3), FACTORY.of(1, 2)));
+  }
+
+  private static <T> void assertClassifications(Schema<String, T> schema, Function<Integer, T> value) {
+    List<MatchingConstraint<String, String>> rules = Arrays.asList(
+            MatchingConstraint.<String, String>anonymous().neq("x", value.apply(5)).priority(2).classification("NE5").build(),
+            MatchingConstraint.<String, String>anonymous().eq("x", value.apply(7)).priority(1).classification("EQ7").build());
+    ImmutableClassifier<T, String> classifier = ImmutableClassifier.<String, T, String>builder(schema).build(rules);
+    assertEquals(Arrays.asList("NE5"), classifier.classifications(value.apply(3)).collect(toList()));
+    assertEquals(Arrays.asList(), classifier.classifications(value.apply(5)).collect(toList()));
+    assertEquals(Arrays.asList("NE5", "EQ7"), classifier.classifications(value.apply(7)).collect(toList()));
+  }
+}
@@ -0,0 +1,128 @@
+package uk.co.openkappa.bitrules.matchers;
+
+import org.junit.jupiter.api.Test;
+import uk.co.openkappa.bitrules.Operation;
+import uk.co.openkappa.bitrules.masks.SmallMask;
+import uk.co.openkappa.bitrules.matchers.nodes.DoubleNode;
+import uk.co.openkappa.bitrules.matchers.nodes.IntNode;
+import uk.co.openkappa.bitrules.matchers.nodes.LongNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static uk.co.openkappa.bitrules.Mask.with;
+import static uk.co.openkappa.bitrules.masks.SmallMask.FACTORY;
+
+public class NumericNodeLayoutTest {
+
+  private static final Operation[] RELATIONS = {Operation.GT, Operation.GE, Operation.LT, Operation.LE, Operation.EQ};
+  private static final int[] COUNTS = {0, 1, 2, 3, 7, 8, 15, 16, 17, 100, 1000};
+
+  @Test
+  public void testIntNodeMatchesLinearScan() throws IOException {
+    SplittableRandom random = new SplittableRandom(0);
+    for (int count : COUNTS) {
+      int[] thresholds = IntStream.range(0, count).map(i -> i * 3 + random.nextInt(3)).toArray();
+      for (Operation relation : RELATIONS) {
+        IntNode<SmallMask> node = new IntNode<>(relation, FACTORY.emptySingleton());
+        for (int i = count - 1; i >= 0; --i) {
+          node.add(thresholds[i], i);
+        }
+        node.optimise();
+        IntNode<SmallMask> restored = IntNode.read(relation, ByteBuffer.wrap(bytes(node::write)), FACTORY);
+        for (int value = -2; value <= count * 3 + 2; ++value) {
+          int v = value;
+          SmallMask expected = expected(count, i -> satisfies(relation, Integer.compare(v, thresholds[i])));
+          assertEquals(expected, node.match(value), relation + " " + value + " in " + count);
+          assertEquals(expected, restored.match(value), relation + " " + value + " in " + count);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testLongNodeMatchesLinearScan() throws IOException {
+    SplittableRandom random = new SplittableRandom(0);
+    for (int count : COUNTS) {
+      long[] thresholds = IntStream.range(0, count).mapToLong(i -> Long.MIN_VALUE / 2 + i * 3L + random.nextInt(3)).toArray();
+      for (Operation relation : RELATIONS) {
+        LongNode<SmallMask> node = new LongNode<>(relation, FACTORY.emptySingleton());
+        for (int i = 0; i < count; ++i) {
+          node.add(thresholds[i], i);
+        }
+        node.optimise();
+        LongNode<SmallMask> restored = LongNode.read(relation, ByteBuffer.wrap(bytes(node::write)), FACTORY);
+        for (long value = Long.MIN_VALUE / 2 - 2; value <= Long.MIN_VALUE / 2 + count * 3 + 2; ++value) {
+          long v = value;
+          SmallMask expected = expected(count, i -> satisfies(relation, Long.compare(v, thresholds[i])));
+          assertEquals(expected, node.match(value), relation + " " + value + " in " + count);
+          assertEquals(expected, restored.match(value), relation + " " + value + " in " + count);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDoubleNodeMatchesLinearScan() throws IOException {
+    SplittableRandom random = new SplittableRandom(0);
+    for (int count : COUNTS) {
+      // straddle zero so negative thresholds are laid out too
+      double[] thresholds = IntStream.range(0, count).mapToDouble(i -> (i - count / 2) * 1.5 + random.nextInt(3) * 0.5).toArray();
+      for (Operation relation : RELATIONS) {
+        DoubleNode<SmallMask> node = new DoubleNode<>(relation, FACTORY.emptySingleton());
+        for (int i = 0; i < count; ++i) {
+          node.add(thresholds[i], i);
+        }
+        node.optimise();
+        DoubleNode<SmallMask> restored = DoubleNode.read(relation, ByteBuffer.wrap(bytes(node::write)), FACTORY);
+        for (double value = -count - 1; value <= count + 1; value += 0.25) {
+          double v = value;
+          SmallMask expected = expected(count, i -> satisfies(relation, Double.compare(v, thresholds[i])));
+          assertEquals(expected, node.match(value), relation + " " + value + " in " + count);
+          assertEquals(expected, restored.match(value), relation + " " + value + " in " + count);
+        }
+      }
+    }
+  }
+
+  private static boolean satisfies(Operation relation, int comparison) {
+    switch (relation) {
+      case GT:
+        return comparison > 0;
+      case GE:
+        return comparison >= 0;
+      case LT:
+        return comparison < 0;
+      case LE:
+        return comparison <= 0;
+      default:
+        return comparison == 0;
+    }
+  }
+
+  private static SmallMask expected(int count, IntPredicate satisfied) {
+    SmallMask expected = new SmallMask();
+    for (int i = 0; i < count; ++i) {
+      if (satisfied.test(i)) {
+        with(expected, i);
+      }
+    }
+    return expected;
+  }
+
+  private interface Writer {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private static byte[] bytes(Writer writer) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    writer.write(new DataOutputStream(bytes));
+    return bytes.toByteArray();
+  }
+}
@@ -22,4 +22,12 @@ public class StringMutableMatcherTest {
     TinyMask mask = matcher.freeze().match("foo", FACTORY.contiguous(63));
     assertEquals(FACTORY.of(0, 2, 3), mask);
   }
+
+  @Test
+  public void testInputShorterThanLongestPrefix() {
+    StringConstraintAccumulator<String, TinyMask> matcher = new StringConstraintAccumulator<>(Function.identity(), FACTORY, 2);
+    matcher.addConstraint(startsWith("foobar"), 0);
+    matcher.addConstraint(startsWith("f"), 1);
+    assertEquals(FACTORY.of(1), matcher.freeze().match("foo", FACTORY.contiguous(2)));
+  }
 }
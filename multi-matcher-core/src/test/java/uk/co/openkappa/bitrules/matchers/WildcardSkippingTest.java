@@ -0,0 +1,48 @@
+package uk.co.openkappa.bitrules.matchers;
+
+import org.junit.jupiter.api.Test;
+import uk.co.openkappa.bitrules.Matcher;
+import uk.co.openkappa.bitrules.masks.TinyMask;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static uk.co.openkappa.bitrules.Constraint.*;
+import static uk.co.openkappa.bitrules.masks.TinyMask.FACTORY;
+
+public class WildcardSkippingTest {
+
+  @Test
+  public void testIntMatcherSkipsWhenContextIsWildcarded() {
+    AtomicInteger calls = new AtomicInteger();
+    IntMatcher<Integer, TinyMask> accumulator = new IntMatcher<>(value -> {
+      calls.incrementAndGet();
+      return value;
+    }, FACTORY, 4);
+    accumulator.addConstraint(greaterThan(10), 0);
+    accumulator.addConstraint(equalTo(5), 1);
+    Matcher<Integer, TinyMask> matcher = accumulator.freeze();
+    assertEquals(FACTORY.of(2, 3), matcher.match(0, FACTORY.of(2, 3)));
+    assertEquals(0, calls.get());
+    assertEquals(FACTORY.of(1, 3), matcher.match(5, FACTORY.of(0, 1, 3)));
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testStringMatcherOnlySkipsWhenContextIsUnconstrained() {
+    AtomicInteger calls = new AtomicInteger();
+    StringConstraintAccumulator<String, TinyMask> accumulator = new StringConstraintAccumulator<>(value -> {
+      calls.incrementAndGet();
+      return value;
+    }, FACTORY, 4);
+    accumulator.addConstraint(equalTo("foo"), 0);
+    accumulator.addConstraint(notEqualTo("bar"), 1);
+    accumulator.addConstraint(startsWith("b"), 2);
+    Matcher<String, TinyMask> matcher = accumulator.freeze();
+    assertEquals(FACTORY.of(3), matcher.match("bar", FACTORY.of(3)));
+    assertEquals(0, calls.get());
+    // rule 1 isn't an equality constraint, but must still be checked
+    assertEquals(FACTORY.of(3), matcher.match("bar", FACTORY.of(1, 3)));
+    assertEquals(1, calls.get());
+  }
+}